@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mollie.api.MollieClient;
+import com.mollie.api.MollieException;
+import com.mollie.api.http.StubHttpTransport;
+import com.mollie.api.http.TransportRequest;
+import com.mollie.api.http.TransportResponse;
+import com.mollie.api.objects.Payment;
+
+/**
+ * Measures the latency of fetching a page of 250 payments with and without
+ * gzip compression, from a local stub delivering the body at a limited
+ * bandwidth. The bytesIn counter reports the bytes received per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+    @Param({ "false", "true" })
+    public boolean compression;
+
+    /**
+     * Bandwidth of the stub in kilobytes per second, 0 for unlimited.
+     */
+    @Param({ "0", "10000" })
+    public int bandwidth;
+
+    private Payments _payments;
+    private String _apiPath;
+    private volatile long _bytesIn;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Traffic {
+        public long bytesIn;
+    }
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        StubHttpTransport transport = new ThrottledTransport(bandwidth);
+        MollieClient api = Fixtures.client(transport);
+        byte[] page = Fixtures.paymentsPage(250).getBytes(StandardCharsets.UTF_8);
+
+        _payments = api.payments();
+        _apiPath = _payments.listPath(_payments.getResourceName(), 0, 250, null);
+
+        if (compression)
+        {
+            api.setResponseCompression(true);
+            transport.respond(MollieClient.HTTP_GET, _apiPath, 200,
+                Collections.singletonMap("Content-Encoding", "gzip"), gzip(page));
+        }
+        else
+        {
+            transport.respond(MollieClient.HTTP_GET, _apiPath, 200,
+                Collections.singletonMap("Content-Type", "application/json"), page);
+        }
+
+        api.setMetricsListener((resource, method, duration, bytesOut, bytesIn, error) -> _bytesIn = bytesIn);
+    }
+
+    @Benchmark
+    public List<Payment> restList(Traffic traffic) throws MollieException
+    {
+        List<Payment> page = _payments.rest_list(_apiPath);
+
+        traffic.bytesIn += _bytesIn;
+        return page;
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Stub delivering response bodies no faster than the given bandwidth.
+     */
+    private static class ThrottledTransport extends StubHttpTransport {
+        private final long _nanosPerByte;
+
+        ThrottledTransport(int bandwidth)
+        {
+            _nanosPerByte = (bandwidth > 0 ? TimeUnit.SECONDS.toNanos(1) / (bandwidth * 1024L) : 0);
+        }
+
+        @Override
+        public TransportResponse execute(TransportRequest request) throws IOException
+        {
+            TransportResponse response = super.execute(request);
+
+            if (_nanosPerByte == 0)
+                return response;
+
+            return new TransportResponse(response.status(), response.headers(),
+                new FilterInputStream(response.body()) {
+                    @Override
+                    public int read() throws IOException {
+                        LockSupport.parkNanos(_nanosPerByte);
+                        return super.read();
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int read = super.read(b, off, len);
+
+                        if (read > 0)
+                            LockSupport.parkNanos(read * _nanosPerByte);
+
+                        return read;
+                    }
+                });
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+
+import com.mollie.api.MollieClient;
+import com.mollie.api.MollieException;
+import com.mollie.api.http.StubHttpTransport;
+
+/**
+ * Canned api responses and a client answering from memory, shared by the
+ * benchmarks.
+ */
+final class Fixtures {
+    static final String API_KEY = "test_dHar4XY7LxsDOtmnkVtjNVWXLSlXsM";
+    static final String PAYMENT_ID = "tr_7UhSN1zuXS";
+
+    private Fixtures() {
+    }
+
+    /**
+     * @param name name of the fixture in the fixtures resource directory
+     * @return contents of the fixture
+     */
+    static String load(String name) throws IOException
+    {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            StringWriter writer = new StringWriter();
+
+            IOUtils.copy(in, writer, StandardCharsets.UTF_8);
+            return writer.toString();
+        }
+    }
+
+    /**
+     * @param size number of payments on the page
+     * @return a payments list response holding the given number of payments
+     */
+    static String paymentsPage(int size) throws IOException
+    {
+        String payment = load("payment.json");
+        StringBuilder data = new StringBuilder();
+
+        for (int i = 0; i < size; i++)
+            data.append(i > 0 ? "," : "").append(payment);
+
+        return load("payments.json")
+            .replace("\"count\": 1", "\"count\": " + size)
+            .replace("\"totalCount\": 1", "\"totalCount\": " + size)
+            .replace("\"data\": []", "\"data\": [" + data + "]");
+    }
+
+    /**
+     * @param transport transport answering the calls of the client
+     * @return client sending its calls through the given transport
+     */
+    static MollieClient client(StubHttpTransport transport) throws MollieException
+    {
+        MollieClient api = new MollieClient();
+
+        transport.setRecording(false);
+        api.setApiKey(API_KEY);
+        api.setTransport(transport);
+        api.payments().setCache(null);
+
+        return api;
+    }
+}
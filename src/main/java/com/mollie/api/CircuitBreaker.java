@@ -0,0 +1,272 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stops sending calls to an endpoint group of the remote API while it is
+ * failing, so callers fail fast instead of waiting for timeouts. Every group
+ * (payments, refunds, methods, issuers) has its own circuit, so an outage of
+ * one group does not affect the others.
+ *
+ * <ul>
+ * <li>closed: calls are sent, and the outcomes of the last
+ * {@code windowSize} calls are tracked. Once at least {@code minimumCalls}
+ * are tracked and the rate of failed calls or of slow calls reaches its
+ * threshold, the circuit opens.</li>
+ * <li>open: calls are rejected with a {@link CircuitOpenException}. After
+ * {@code openDuration} milliseconds the circuit becomes half-open.</li>
+ * <li>half-open: {@code halfOpenCalls} probe calls are sent and other calls
+ * are rejected. When the probes stay below the thresholds the circuit
+ * closes, otherwise it opens again.</li>
+ * </ul>
+ *
+ * A call fails when it cannot be sent or receives a 5xx response. It is slow
+ * when it takes at least {@code slowCallDuration} milliseconds.
+ */
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    public static final int DEFAULT_WINDOW_SIZE = 50;
+    public static final int DEFAULT_MINIMUM_CALLS = 10;
+    public static final double DEFAULT_FAILURE_RATE = 0.5;
+    public static final long DEFAULT_SLOW_CALL_DURATION = 10000;
+    public static final double DEFAULT_SLOW_CALL_RATE = 0.8;
+    public static final long DEFAULT_OPEN_DURATION = 30000;
+    public static final int DEFAULT_HALF_OPEN_CALLS = 3;
+
+    private final int _windowSize;
+    private final int _minimumCalls;
+    private final double _failureRate;
+    private final long _slowCallDuration;
+    private final double _slowCallRate;
+    private final long _openDuration;
+    private final int _halfOpenCalls;
+    private final ConcurrentHashMap<String, Circuit> _circuits = new ConcurrentHashMap<String, Circuit>();
+
+    public CircuitBreaker()
+    {
+        this(DEFAULT_WINDOW_SIZE, DEFAULT_MINIMUM_CALLS, DEFAULT_FAILURE_RATE,
+            DEFAULT_SLOW_CALL_DURATION, DEFAULT_SLOW_CALL_RATE, DEFAULT_OPEN_DURATION,
+            DEFAULT_HALF_OPEN_CALLS);
+    }
+
+    /**
+     * @param windowSize number of most recent calls tracked per group
+     * @param minimumCalls number of tracked calls needed before the circuit
+     * may open
+     * @param failureRate rate of failed calls, between 0 and 1, opening the
+     * circuit
+     * @param slowCallDuration duration in milliseconds from which a call is
+     * slow
+     * @param slowCallRate rate of slow calls, between 0 and 1, opening the
+     * circuit
+     * @param openDuration time in milliseconds the circuit stays open
+     * @param halfOpenCalls number of probe calls sent while half-open
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRate,
+            long slowCallDuration, double slowCallRate, long openDuration, int halfOpenCalls)
+    {
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize || halfOpenCalls < 1 ||
+                failureRate <= 0 || failureRate > 1 || slowCallRate <= 0 || slowCallRate > 1 ||
+                slowCallDuration < 0 || openDuration < 0)
+            throw new IllegalArgumentException("Invalid circuit breaker settings");
+
+        _windowSize = windowSize;
+        _minimumCalls = minimumCalls;
+        _failureRate = failureRate;
+        _slowCallDuration = slowCallDuration;
+        _slowCallRate = slowCallRate;
+        _openDuration = openDuration;
+        _halfOpenCalls = halfOpenCalls;
+    }
+
+    /**
+     * @param group the endpoint group
+     * @return current state of the circuit of the group.
+     */
+    public State state(String group)
+    {
+        return circuit(group).state(System.nanoTime());
+    }
+
+    /**
+     * Asks permission to send a call to an endpoint group. The returned
+     * permit must be passed to {@link #record} once the call completes.
+     *
+     * @param group the endpoint group
+     * @return permit for the call.
+     * @throws CircuitOpenException when the circuit of the group is open.
+     */
+    public long acquire(String group) throws CircuitOpenException
+    {
+        return circuit(group).acquire(group, System.nanoTime());
+    }
+
+    /**
+     * Records the outcome of a call. Outcomes of calls permitted before the
+     * circuit last changed state are ignored.
+     *
+     * @param group the endpoint group
+     * @param permit the permit returned by {@link #acquire}
+     * @param failed whether the call failed
+     * @param duration duration of the call in milliseconds
+     */
+    public void record(String group, long permit, boolean failed, long duration)
+    {
+        circuit(group).record(permit, failed, duration >= _slowCallDuration, System.nanoTime());
+    }
+
+    /**
+     * Derives the endpoint group of a request from its uri: the last
+     * resource named in the path. Refunds of a payment
+     * ({@code payments/tr_xxx/refunds}) form the group "refunds".
+     *
+     * @param uri the request uri
+     * @return name of the endpoint group.
+     */
+    public static String group(URI uri)
+    {
+        String path = uri.getPath();
+        String prefix = "/" + MollieClient.API_VERSION + "/";
+        int index = path.indexOf(prefix);
+
+        return MollieClient.resourceOf(index >= 0 ? path.substring(index + prefix.length()) : path);
+    }
+
+    private Circuit circuit(String group)
+    {
+        Circuit circuit = _circuits.get(group);
+
+        if (circuit == null)
+        {
+            Circuit created = new Circuit();
+
+            circuit = _circuits.putIfAbsent(group, created);
+            circuit = (circuit != null ? circuit : created);
+        }
+
+        return circuit;
+    }
+
+    private class Circuit {
+        private final ReentrantLock _lock = new ReentrantLock();
+        private final boolean[] _failed = new boolean[_windowSize];
+        private final boolean[] _slow = new boolean[_windowSize];
+        private State _state = State.CLOSED;
+        private long _epoch;
+        private long _openedAt;
+        private int _next, _calls, _failures, _slowCalls;
+        private int _probes;
+
+        State state(long now)
+        {
+            _lock.lock();
+
+            try {
+                if (_state == State.OPEN && now - _openedAt >= TimeUnit.MILLISECONDS.toNanos(_openDuration))
+                    transition(State.HALF_OPEN, now);
+
+                return _state;
+            } finally {
+                _lock.unlock();
+            }
+        }
+
+        long acquire(String group, long now) throws CircuitOpenException
+        {
+            _lock.lock();
+
+            try {
+                State state = state(now);
+
+                if (state == State.OPEN || (state == State.HALF_OPEN && _probes >= _halfOpenCalls))
+                    throw new CircuitOpenException(group);
+
+                if (state == State.HALF_OPEN)
+                    _probes++;
+
+                return _epoch;
+            } finally {
+                _lock.unlock();
+            }
+        }
+
+        void record(long permit, boolean failed, boolean slow, long now)
+        {
+            _lock.lock();
+
+            try {
+                if (permit != _epoch || _state == State.OPEN)
+                    return;
+
+                if (_calls == _windowSize)
+                {
+                    _failures -= (_failed[_next] ? 1 : 0);
+                    _slowCalls -= (_slow[_next] ? 1 : 0);
+                }
+                else
+                {
+                    _calls++;
+                }
+
+                _failed[_next] = failed;
+                _slow[_next] = slow;
+                _failures += (failed ? 1 : 0);
+                _slowCalls += (slow ? 1 : 0);
+                _next = (_next + 1) % _windowSize;
+
+                int needed = (_state == State.HALF_OPEN ? _halfOpenCalls : _minimumCalls);
+
+                if (_calls >= needed)
+                {
+                    if (_failures >= _failureRate * _calls || _slowCalls >= _slowCallRate * _calls)
+                        transition(State.OPEN, now);
+                    else if (_state == State.HALF_OPEN)
+                        transition(State.CLOSED, now);
+                }
+            } finally {
+                _lock.unlock();
+            }
+        }
+
+        private void transition(State state, long now)
+        {
+            _state = state;
+            _epoch++;
+            _openedAt = now;
+            _next = _calls = _failures = _slowCalls = _probes = 0;
+        }
+    }
+}
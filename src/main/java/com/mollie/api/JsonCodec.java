@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.mollie.api.objects.Issuer;
+import com.mollie.api.objects.Method;
+import com.mollie.api.objects.Payment;
+import com.mollie.api.objects.PaymentRefund;
+
+/**
+ * Json codec shared by all resources of a {@link MollieClient}. The
+ * underlying {@link Gson} instance is configured once, and the type adapters
+ * of all api objects are resolved up front. Instances are thread-safe.
+ */
+public class JsonCodec {
+    /**
+     * Classes of the api objects whose adapters are resolved up front.
+     */
+    private static final Class<?>[] OBJECT_CLASSES = {
+        Payment.class, Payment.Links.class,
+        PaymentRefund.class,
+        Method.class, Method.Amount.class, Method.ImageGroup.class,
+        Issuer.class
+    };
+
+    private final Gson _gson;
+    private final Map<Class<?>, TypeAdapter<?>> _adapters;
+
+    public JsonCodec() {
+        this(new GsonBuilder());
+    }
+
+    /**
+     * @param builder builder used to create the underlying {@link Gson}
+     * instance.
+     */
+    public JsonCodec(GsonBuilder builder)
+    {
+        HashMap<Class<?>, TypeAdapter<?>> adapters = new HashMap<Class<?>, TypeAdapter<?>>();
+
+        _gson = builder.create();
+
+        for (Class<?> type : OBJECT_CLASSES) {
+            adapters.put(type, _gson.getAdapter(type));
+        }
+
+        _adapters = Collections.unmodifiableMap(adapters);
+    }
+
+    /**
+     * @return the underlying {@link Gson} instance.
+     */
+    public Gson gson() { return _gson; }
+
+    /**
+     * Returns the type adapter for a class, using the precomputed adapter for
+     * api objects.
+     *
+     * @param type class to get the adapter for
+     * @return the type adapter
+     */
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> adapter(Class<T> type)
+    {
+        TypeAdapter<T> adapter = (TypeAdapter<T>)_adapters.get(type);
+
+        return (adapter != null ? adapter : _gson.getAdapter(type));
+    }
+
+    /**
+     * Encodes an object as json.
+     *
+     * @param data the object to encode
+     * @return json representation of the object
+     */
+    public String toJson(Object data) {
+        return _gson.toJson(data);
+    }
+}
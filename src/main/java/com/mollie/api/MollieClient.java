@@ -29,32 +29,43 @@
  */
 package com.mollie.api;
 
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.io.IOUtils;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.methods.HttpDelete;
-import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.util.EntityUtils;
 
+import com.mollie.api.http.ApacheHttpTransport;
+import com.mollie.api.http.HttpTransport;
+import com.mollie.api.http.TransportRequest;
+import com.mollie.api.http.TransportResponse;
+import com.mollie.api.metrics.CallMetrics;
+import com.mollie.api.journal.PaymentJournal;
+import com.mollie.api.metrics.MetricsListener;
 import com.mollie.api.objects.Payment;
 import com.mollie.api.resource.Issuers;
 import com.mollie.api.resource.Methods;
 import com.mollie.api.resource.Payments;
 import com.mollie.api.resource.PaymentsRefunds;
 
-public class MollieClient {
+public class MollieClient implements Closeable {
     /**
      * Version of our client.
      */
@@ -74,6 +85,20 @@ public class MollieClient {
     public static final String HTTP_POST = "POST";
     public static final String HTTP_DELETE = "DELETE";
 
+    private static final String[] RESOURCES = { "payments", "refunds", "methods", "issuers" };
+
+    /**
+     * Header carrying the idempotency key sent with every write, allowing a
+     * write to be retried without being executed twice.
+     */
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    /**
+     * Largest buffer allocated for a response body before its bytes arrive,
+     * whatever Content-Length the response announces.
+     */
+    private static final int INITIAL_BODY_SIZE = 8192;
+
     protected Methods _methods;
     protected Payments _payments;
     protected Issuers _issuers;
@@ -81,6 +106,20 @@ public class MollieClient {
     protected String _apiEndpoint = API_ENDPOINT;
     protected String _apiKey;
 
+    protected volatile HttpTransport _transport = new ApacheHttpTransport();
+    protected volatile Executor _executor;
+    protected JsonCodec _codec = new JsonCodec();
+    protected volatile RetryPolicy _retryPolicy = RetryPolicy.NONE;
+    protected volatile RateLimiter _rateLimiter;
+    protected volatile CircuitBreaker _circuitBreaker;
+    protected volatile MetricsListener _metricsListener;
+    protected volatile PaymentJournal _journal;
+    protected volatile boolean _responseCompression;
+    protected volatile int _requestCompressionThreshold = -1;
+    private volatile RequestTemplate _template;
+    protected ScheduledExecutorService _scheduler;
+    private final ReentrantLock _lock = new ReentrantLock();
+
     public MollieClient() {
         this.initResources(this);
     }
@@ -101,6 +140,208 @@ public class MollieClient {
     public String apiEndpoint() { return _apiEndpoint; }
     public void setApiEndpoint(String endpoint) { _apiEndpoint = endpoint; }
 
+    public String apiKey() { return _apiKey; }
+
+    /**
+     * @return transport used to send requests to the remote API.
+     */
+    public HttpTransport transport() { return _transport; }
+
+    /**
+     * Sets the transport used to send requests to the remote API. Defaults
+     * to a pooled {@link ApacheHttpTransport}. The transport is closed
+     * together with this client.
+     *
+     * @param transport transport to use
+     */
+    public void setTransport(HttpTransport transport) { _transport = transport; }
+
+    /**
+     * @return json codec shared by all resources of this client.
+     */
+    public JsonCodec codec() { return _codec; }
+
+    /**
+     * Sets the json codec shared by all resources of this client.
+     *
+     * @param codec codec to use
+     */
+    public void setCodec(JsonCodec codec) { _codec = codec; }
+
+    /**
+     * @return policy deciding which failed calls are retried.
+     */
+    public RetryPolicy retryPolicy() { return _retryPolicy; }
+
+    /**
+     * Sets the policy deciding which failed calls are retried. Defaults to
+     * {@link RetryPolicy#NONE}.
+     *
+     * @param retryPolicy the policy to use
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        _retryPolicy = (retryPolicy != null ? retryPolicy : RetryPolicy.NONE);
+    }
+
+    /**
+     * @return limiter pacing the requests sent by this client, or null when
+     * requests are not paced.
+     */
+    public RateLimiter rateLimiter() { return _rateLimiter; }
+
+    /**
+     * Sets the limiter pacing the requests sent by this client per api key.
+     * Requests are not paced by default.
+     *
+     * @param rateLimiter the limiter to use, or null to stop pacing requests
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) { _rateLimiter = rateLimiter; }
+
+    /**
+     * @return circuit breaker guarding the endpoint groups of the remote
+     * API, or null when calls are always sent.
+     */
+    public CircuitBreaker circuitBreaker() { return _circuitBreaker; }
+
+    /**
+     * Sets the circuit breaker guarding the endpoint groups of the remote
+     * API. Calls are always sent by default.
+     *
+     * @param circuitBreaker the breaker to use, or null to always send calls
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) { _circuitBreaker = circuitBreaker; }
+
+    /**
+     * @return listener receiving the outcome of every api call, or null.
+     */
+    public MetricsListener metricsListener() { return _metricsListener; }
+
+    /**
+     * Sets the listener receiving the outcome of every api call made by the
+     * resources of this client, such as a {@link CallMetrics}.
+     *
+     * @param metricsListener the listener to use, or null to stop recording
+     */
+    public void setMetricsListener(MetricsListener metricsListener) { _metricsListener = metricsListener; }
+
+    /**
+     * @return journal recording the payments and refunds received, or null.
+     */
+    public PaymentJournal journal() { return _journal; }
+
+    /**
+     * Sets the journal recording every payment and refund received by the
+     * resources of this client. The journal is not closed by this client.
+     *
+     * @param journal the journal to use, or null to stop recording
+     */
+    public void setJournal(PaymentJournal journal) { _journal = journal; }
+
+    /**
+     * @return whether gzip compressed responses are accepted.
+     */
+    public boolean responseCompression() { return _responseCompression; }
+
+    /**
+     * Sets whether gzip compressed responses are accepted. Compressed
+     * responses are decompressed while they are read. Off by default.
+     *
+     * @param responseCompression whether to accept compressed responses
+     */
+    public void setResponseCompression(boolean responseCompression) { _responseCompression = responseCompression; }
+
+    /**
+     * @return minimum size in bytes of request bodies sent gzip compressed,
+     * or -1 when request bodies are never compressed.
+     */
+    public int requestCompressionThreshold() { return _requestCompressionThreshold; }
+
+    /**
+     * Sets the minimum size in bytes from which request bodies are sent gzip
+     * compressed. Request bodies are never compressed by default.
+     *
+     * @param threshold minimum body size in bytes, or -1 to never compress
+     */
+    public void setRequestCompressionThreshold(int threshold) { _requestCompressionThreshold = threshold; }
+
+    public int maxConnections() { return apacheTransport().maxConnections(); }
+    public int maxConnectionsPerRoute() { return apacheTransport().maxConnectionsPerRoute(); }
+    public long keepAlive() { return apacheTransport().keepAlive(); }
+    public long idleTimeout() { return apacheTransport().idleTimeout(); }
+    public int ioThreads() { return apacheTransport().ioThreads(); }
+
+    /**
+     * Sets the maximum number of connections kept in the pool.
+     *
+     * @param maxConnections maximum number of connections
+     * @see ApacheHttpTransport#setMaxConnections(int)
+     */
+    public void setMaxConnections(int maxConnections) {
+        apacheTransport().setMaxConnections(maxConnections);
+    }
+
+    /**
+     * Sets the maximum number of connections kept in the pool for a single
+     * route.
+     *
+     * @param maxConnectionsPerRoute maximum number of connections per route
+     * @see ApacheHttpTransport#setMaxConnectionsPerRoute(int)
+     */
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        apacheTransport().setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+    }
+
+    /**
+     * Sets the time a connection is kept alive when the server does not
+     * specify a keep-alive timeout.
+     *
+     * @param keepAlive keep-alive time in milliseconds
+     * @see ApacheHttpTransport#setKeepAlive(long)
+     */
+    public void setKeepAlive(long keepAlive) {
+        apacheTransport().setKeepAlive(keepAlive);
+    }
+
+    /**
+     * Sets the time after which idle connections are evicted from the pool.
+     *
+     * @param idleTimeout idle time in milliseconds
+     * @see ApacheHttpTransport#setIdleTimeout(long)
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        apacheTransport().setIdleTimeout(idleTimeout);
+    }
+
+    /**
+     * Sets the number of I/O threads used by the non-blocking http engine.
+     *
+     * @param ioThreads number of I/O threads
+     * @see ApacheHttpTransport#setIoThreads(int)
+     */
+    public void setIoThreads(int ioThreads) {
+        apacheTransport().setIoThreads(ioThreads);
+    }
+
+    /**
+     * @return executor on which the results of asynchronous calls are
+     * delivered.
+     */
+    public Executor executor() {
+        Executor executor = _executor;
+
+        return (executor != null ? executor : ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sets the executor on which the results of asynchronous calls are
+     * decoded and delivered. Defaults to the common fork join pool. On Java
+     * 21 and later, {@link VirtualThreads#newExecutor(String)} runs them on
+     * virtual threads.
+     *
+     * @param executor executor to use, or null for the default.
+     */
+    public void setExecutor(Executor executor) { _executor = executor; }
+
     /**
      * Sets the api key
      *
@@ -146,64 +387,566 @@ public class MollieClient {
      */
     public String performHttpCall(String method, String apiMethod, String httpBody) throws MollieException
     {
+        TransportResponse response = this.performHttpRequest(method, apiMethod, httpBody);
+
+        try {
+            return this.readResponse(response);
+        } catch (IOException e) {
+            throw new MollieException("Unable to communicate with Mollie");
+        } finally {
+            closeResponse(response);
+        }
+    }
+
+    /**
+     * Perform a http call without blocking the calling thread. The result is
+     * read and delivered on the configured executor.
+     *
+     * @param method the http method to use
+     * @param apiMethod the api method to call
+     * @param httpBody the contents to send to the server.
+     * @return future completing with the result of the http call, or
+     * completing exceptionally with a {@link MollieException} when the api key
+     * is not set or when there is a problem communicating with the mollie
+     * server.
+     * @see #performHttpCall(String method, String apiMethod, String httpBody)
+     */
+    public CompletableFuture<String> performHttpCallAsync(String method, String apiMethod, String httpBody)
+    {
+        return this.performHttpRequestAsync(method, apiMethod, httpBody)
+            .thenApply(response -> {
+                try {
+                    return this.readResponse(response);
+                } catch (IOException e) {
+                    throw new CompletionException(
+                        new MollieException("Unable to communicate with Mollie"));
+                } finally {
+                    closeResponse(response);
+                }
+            });
+    }
+
+    /**
+     * Perform a http call and return the response without reading its body,
+     * so it can be decoded straight from the stream. This method is used by
+     * the resource specific classes. Please use the payments() method to
+     * perform operations on payments.
+     *
+     * @param method the http method to use
+     * @param apiMethod the api method to call
+     * @param httpBody the contents to send to the server.
+     * @return the response, which must be closed by the caller.
+     * @throws MollieException when the api key is not set or when there is a
+     * problem communicating with the mollie server.
+     */
+    public TransportResponse performHttpRequest(String method, String apiMethod, String httpBody) throws MollieException
+    {
+        TransportRequest request = this.createRequest(method, apiMethod, httpBody);
+
+        return decode(this.execute(request));
+    }
+
+    /**
+     * Perform a http call without blocking the calling thread and return the
+     * response without reading its body. The future completes on the
+     * configured executor. This method is used by the resource specific
+     * classes. Please use the payments() method to perform operations on
+     * payments.
+     *
+     * @param method the http method to use
+     * @param apiMethod the api method to call
+     * @param httpBody the contents to send to the server.
+     * @return future completing with the response, which must be closed by
+     * the caller, or completing exceptionally with a {@link MollieException}
+     * when the api key is not set or when there is a problem communicating
+     * with the mollie server.
+     */
+    public CompletableFuture<TransportResponse> performHttpRequestAsync(String method, String apiMethod, String httpBody)
+    {
+        TransportRequest request = null;
+
+        try {
+            request = this.createRequest(method, apiMethod, httpBody);
+        } catch (MollieException e) {
+            CompletableFuture<TransportResponse> future = new CompletableFuture<TransportResponse>();
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        return this.executeAsync(request)
+            .handleAsync((response, failure) -> {
+                if (failure != null) {
+                    throw (failure instanceof CompletionException ?
+                        (CompletionException)failure : new CompletionException(failure));
+                }
+
+                try {
+                    return decode(response);
+                } catch (MollieException e) {
+                    throw new CompletionException(e);
+                }
+            }, this.executor());
+    }
+
+    /**
+     * Executes a request, retrying transient failures as allowed by the retry
+     * policy.
+     *
+     * @param request the request to execute
+     * @return the response, which must be closed by the caller.
+     * @throws MollieException when there is a problem communicating with the
+     * mollie server.
+     */
+    protected TransportResponse execute(TransportRequest request) throws MollieException
+    {
+        RetryPolicy policy = _retryPolicy;
+        CircuitBreaker breaker = _circuitBreaker;
+        String group = (breaker != null ? CircuitBreaker.group(request.uri()) : null);
+        int retries = 0;
+        long delayed = 0;
+
+        while (true)
+        {
+            TransportResponse response = null;
+            Exception failure = null;
+            long delay = 0;
+
+            this.throttle();
+
+            long permit = (breaker != null ? breaker.acquire(group) : 0);
+            long started = System.nanoTime();
+
+            try {
+                response = this.transport().execute(request);
+            } catch (Exception e) {
+                failure = e;
+            }
+
+            if (breaker != null)
+                breaker.record(group, permit, isFailure(response, failure), elapsed(started));
+
+            if ((delay = policy.retryDelay(request, response, failure, retries, delayed)) < 0)
+            {
+                if (failure != null)
+                    throw MollieException.withCause("Unable to communicate with Mollie", failure);
+
+                return response;
+            }
+
+            closeResponse(response);
+
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw MollieException.withCause("Interrupted while waiting to retry", e);
+            }
+
+            retries++;
+            delayed += delay;
+        }
+    }
+
+    /**
+     * Executes a request without blocking the calling thread, retrying
+     * transient failures as allowed by the retry policy.
+     *
+     * @param request the request to execute
+     * @return future completing with the response, which must be closed by
+     * the caller, or completing exceptionally with a {@link MollieException}
+     * when there is a problem communicating with the mollie server.
+     */
+    protected CompletableFuture<TransportResponse> executeAsync(TransportRequest request)
+    {
+        CompletableFuture<TransportResponse> result = new CompletableFuture<TransportResponse>();
+
+        this.attemptAsync(request, _retryPolicy, 0, 0, result);
+        return result;
+    }
+
+    private void attemptAsync(final TransportRequest request, final RetryPolicy policy,
+            final int retries, final long delayed, final CompletableFuture<TransportResponse> result)
+    {
+        RateLimiter limiter = _rateLimiter;
+        long wait = 0;
+
+        try {
+            wait = (limiter != null ? limiter.acquire(_apiKey) : 0);
+        } catch (RateLimitExceededException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+
+        if (wait > 0)
+        {
+            try {
+                this.scheduler().schedule(
+                    () -> this.sendAsync(request, policy, retries, delayed, result),
+                    wait, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(MollieException.withCause("Unable to communicate with Mollie", e));
+            }
+
+            return;
+        }
+
+        this.sendAsync(request, policy, retries, delayed, result);
+    }
+
+    private void sendAsync(final TransportRequest request, final RetryPolicy policy,
+            final int retries, final long delayed, final CompletableFuture<TransportResponse> result)
+    {
+        CircuitBreaker breaker = _circuitBreaker;
+        String group = (breaker != null ? CircuitBreaker.group(request.uri()) : null);
+        CompletableFuture<TransportResponse> attempt = null;
+        long permit = 0;
+
+        try {
+            permit = (breaker != null ? breaker.acquire(group) : 0);
+        } catch (CircuitOpenException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+
+        long started = System.nanoTime();
+        long acquired = permit;
+
+        try {
+            attempt = this.transport().executeAsync(request);
+        } catch (RuntimeException e) {
+            attempt = new CompletableFuture<TransportResponse>();
+            attempt.completeExceptionally(e);
+        }
+
+        attempt.whenComplete((response, failure) -> {
+            Throwable cause = (failure instanceof CompletionException && failure.getCause() != null ?
+                failure.getCause() : failure);
+
+            if (breaker != null)
+                breaker.record(group, acquired, isFailure(response, cause), elapsed(started));
+
+            long delay = policy.retryDelay(request, response, cause, retries, delayed);
+
+            if (delay < 0)
+            {
+                if (cause != null)
+                    result.completeExceptionally(MollieException.withCause("Unable to communicate with Mollie", cause));
+                else
+                    result.complete(response);
+
+                return;
+            }
+
+            closeResponse(response);
+
+            try {
+                this.scheduler().schedule(
+                    () -> this.attemptAsync(request, policy, retries + 1, delayed + delay, result),
+                    delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(MollieException.withCause("Unable to communicate with Mollie", e));
+            }
+        });
+    }
+
+    /**
+     * Derives the resource called by an api method: the last resource named
+     * in its path. Refunds of a payment ({@code payments/tr_xxx/refunds})
+     * are the resource "refunds". Does not allocate for the resources of
+     * this client.
+     *
+     * @param apiMethod the api method
+     * @return name of the resource.
+     */
+    public static String resourceOf(String apiMethod)
+    {
+        int end = apiMethod.indexOf('?');
+        int start = 0, segment = 0, resourceStart = 0, resourceEnd = 0;
+
+        end = (end >= 0 ? end : apiMethod.length());
+
+        for (int i = 0; i <= end; i++)
+        {
+            if (i == end || apiMethod.charAt(i) == '/')
+            {
+                if (segment % 2 == 0 && i > start)
+                {
+                    resourceStart = start;
+                    resourceEnd = i;
+                }
+
+                segment++;
+                start = i + 1;
+            }
+        }
+
+        for (String resource : RESOURCES)
+        {
+            if (resource.length() == resourceEnd - resourceStart &&
+                    apiMethod.regionMatches(resourceStart, resource, 0, resource.length()))
+                return resource;
+        }
+
+        return apiMethod.substring(resourceStart, resourceEnd);
+    }
+
+    /**
+     * Decompresses the body of a response while it is read, when needed.
+     *
+     * @param response the response as received
+     * @return the response with a decoded body
+     * @throws MollieException if the compressed body could not be read, the
+     * response is closed in that case.
+     */
+    private static TransportResponse decode(TransportResponse response) throws MollieException
+    {
+        try {
+            return response.decoded();
+        } catch (IOException e) {
+            closeResponse(response);
+            throw MollieException.withCause("Unable to decode Mollie response: " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] gzip(byte[] body)
+    {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 32);
+
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed, Math.min(body.length + 1, 8192))) {
+            out.write(body);
+        } catch (IOException e) {
+            // writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+
+        return compressed.toByteArray();
+    }
+
+    /**
+     * @return whether an attempt failed in a way that counts against the
+     * health of the remote API: it could not be sent or got a 5xx response.
+     */
+    private static boolean isFailure(TransportResponse response, Throwable failure)
+    {
+        return (failure != null || response == null || response.status() >= 500);
+    }
+
+    private static long elapsed(long started)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+
+    /**
+     * Waits until the rate limiter, if any, allows the next request to be
+     * sent.
+     *
+     * @throws RateLimitExceededException when the request would have to
+     * wait longer than the limiter allows.
+     * @throws MollieException when interrupted while waiting.
+     */
+    protected void throttle() throws MollieException
+    {
+        RateLimiter limiter = _rateLimiter;
+        long wait = (limiter != null ? limiter.acquire(_apiKey) : 0);
+
+        if (wait > 0)
+        {
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw MollieException.withCause("Interrupted while waiting for the rate limiter", e);
+            }
+        }
+    }
+
+    /**
+     * @return scheduler used to delay asynchronous work such as retries,
+     * created on first use.
+     */
+    protected ScheduledExecutorService scheduler()
+    {
+        _lock.lock();
+
+        try {
+            if (_scheduler == null)
+            {
+                _scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "mollie-scheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+
+            return _scheduler;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Creates the transport request for an api call.
+     *
+     * @param method the http method to use
+     * @param apiMethod the api method to call
+     * @param httpBody the contents to send to the server.
+     * @return the request
+     * @throws MollieException when the api key is not set or no valid uri
+     * could be built.
+     */
+    protected TransportRequest createRequest(String method, String apiMethod, String httpBody) throws MollieException
+    {
+        RequestTemplate template = _template;
         URI uri = null;
-        String result = null;
 
         if (_apiKey == null || _apiKey.trim().equals(""))
         {
             throw new MollieException("You have not set an api key. Please use setApiKey() to set the API key.");
         }
 
+        if (template == null || template.apiEndpoint != _apiEndpoint || template.apiKey != _apiKey)
+        {
+            _template = template = new RequestTemplate(_apiEndpoint, _apiKey);
+        }
+
         try {
-            URIBuilder ub = new URIBuilder(this._apiEndpoint + "/" + API_VERSION + "/" + apiMethod);
-            uri = ub.build();
+            uri = new URI(template.baseUri.concat(apiMethod));
         } catch (URISyntaxException e) {
-            e.printStackTrace();
+            throw new MollieException("Invalid api method: \"" + apiMethod + "\"");
         }
 
-        if (uri != null)
+        LinkedHashMap<String, String> headers = new LinkedHashMap<String, String>();
+        byte[] body = null;
+
+        headers.put("Authorization", template.authorization);
+        headers.put("Accept", "application/json");
+
+        if (method.equals(HTTP_POST))
         {
-            CloseableHttpClient httpclient = HttpClientBuilder.create().build();
-            HttpRequestBase action = null;
-            HttpResponse response = null;
-
-            if (method.equals(HTTP_POST)) {
-                action = new HttpPost(uri);
-            } else if (method.equals(HTTP_DELETE)) {
-                action = new HttpDelete(uri);
-            } else {
-                action = new HttpGet(uri);
-            }
+            headers.put(IDEMPOTENCY_KEY_HEADER, UUID.randomUUID().toString());
+        }
+
+        if (_responseCompression)
+        {
+            headers.put("Accept-Encoding", "gzip");
+        }
+
+        if (httpBody != null && method.equals(HTTP_POST))
+        {
+            int threshold = _requestCompressionThreshold;
 
-            if (httpBody != null && action instanceof HttpPost)
+            headers.put("Content-Type", "application/json; charset=UTF-8");
+            body = httpBody.getBytes(StandardCharsets.UTF_8);
+
+            if (threshold >= 0 && body.length >= threshold)
             {
-                StringEntity entity = new StringEntity(httpBody, ContentType.APPLICATION_JSON);
-                ((HttpPost)action).setEntity(entity);
+                headers.put("Content-Encoding", "gzip");
+                body = gzip(body);
             }
+        }
 
-            action.setHeader("Authorization", "Bearer " + this._apiKey);
-            action.setHeader("Accept", ContentType.APPLICATION_JSON.getMimeType());
+        return new TransportRequest(method, uri, headers, body);
+    }
 
-            try {
-                response = httpclient.execute(action);
+    /**
+     * Reads the body of a transport response. The bytes are read into a
+     * buffer sized from the Content-Length of the response when known, and
+     * decoded once. The buffer starts at no more than
+     * {@link #INITIAL_BODY_SIZE} bytes and grows as bytes arrive, so a large
+     * Content-Length does not allocate memory up front.
+     *
+     * @param response the transport response
+     * @return the response body
+     * @throws IOException if the body could not be read
+     */
+    protected String readResponse(TransportResponse response) throws IOException
+    {
+        InputStream in = response.body();
+        long length = response.contentLength();
 
-                HttpEntity entity = response.getEntity();
-                StringWriter sw = new StringWriter();
+        if (length < 0 || length > Integer.MAX_VALUE - 8)
+            return new String(IOUtils.toByteArray(in), StandardCharsets.UTF_8);
 
-                IOUtils.copy(entity.getContent(), sw, "UTF-8");
-                result = sw.toString();
-                EntityUtils.consume(entity);
-            } catch (Exception e) {
-                throw new MollieException("Unable to communicate with Mollie");
+        byte[] body = new byte[(int)Math.min(length, INITIAL_BODY_SIZE)];
+        int read = 0;
+
+        while (read < length)
+        {
+            if (read == body.length)
+                body = Arrays.copyOf(body, (int)Math.min(length, 2L * body.length));
+
+            int count = in.read(body, read, body.length - read);
+
+            if (count < 0)
+                break;
+
+            read += count;
+        }
+
+        return new String(body, 0, read, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Closes the transport of this client and releases all pooled
+     * connections.
+     *
+     * @throws IOException if the transport could not be closed.
+     */
+    public void close() throws IOException
+    {
+        _lock.lock();
+
+        try {
+            if (_scheduler != null)
+            {
+                _scheduler.shutdownNow();
+                _scheduler = null;
             }
+        } finally {
+            _lock.unlock();
+        }
 
+        this.transport().close();
+    }
+
+    private ApacheHttpTransport apacheTransport()
+    {
+        HttpTransport transport = this.transport();
+
+        if (!(transport instanceof ApacheHttpTransport))
+            throw new IllegalStateException("Connection pool settings only apply to an ApacheHttpTransport");
+
+        return (ApacheHttpTransport)transport;
+    }
+
+    private static void closeResponse(TransportResponse response)
+    {
+        if (response != null) {
             try {
-                httpclient.close();
+                response.close();
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
+    }
 
-        return result;
+    /**
+     * Request parts derived from the api endpoint and api key, computed once
+     * for every endpoint and key instead of for every request.
+     */
+    private static final class RequestTemplate
+    {
+        final String apiEndpoint;
+        final String apiKey;
+        final String baseUri;
+        final String authorization;
+
+        RequestTemplate(String apiEndpoint, String apiKey)
+        {
+            this.apiEndpoint = apiEndpoint;
+            this.apiKey = apiKey;
+            this.baseUri = apiEndpoint + "/" + API_VERSION + "/";
+            this.authorization = "Bearer " + apiKey;
+        }
     }
 }
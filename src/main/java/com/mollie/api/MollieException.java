@@ -34,6 +34,7 @@ public class MollieException extends Exception {
     public final String type;
     public final String message;
     protected String _field;
+    protected int _status;
 
     public MollieException(String message) {
         super(message);
@@ -47,6 +48,48 @@ public class MollieException extends Exception {
         this.message = message;
     }
 
+    private MollieException(String type, String message, String field) {
+        super(message);
+        this.type = type;
+        this.message = message;
+        _field = field;
+    }
+
+    /**
+     * Creates an exception for an error reported by the api, using the given
+     * message as is.
+     *
+     * @param type the error type reported by the api
+     * @param message the exception message
+     * @param field the field the error relates to, or null
+     * @return the exception
+     */
+    public static MollieException apiError(String type, String message, String field) {
+        return new MollieException(type, message, field);
+    }
+
+    /**
+     * Creates an exception for a failure that is not reported by the api,
+     * such as a problem communicating with the server.
+     *
+     * @param message the exception message
+     * @param cause the failure causing the exception
+     * @return the exception
+     */
+    public static MollieException withCause(String message, Throwable cause) {
+        MollieException exception = new MollieException(message);
+
+        exception.initCause(cause);
+        return exception;
+    }
+
     public String getField() { return _field; }
     public void setField(String field) { _field = field; }
+
+    /**
+     * @return http status of the response reporting the error, or 0 if the
+     * error did not come with a response.
+     */
+    public int getStatus() { return _status; }
+    public void setStatus(int status) { _status = status; }
 }
@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client side token bucket pacing the requests sent with each api key. Every
+ * key gets its own bucket, holding up to {@code burst} tokens and refilled
+ * at {@code rate} tokens per second. Every request, including retries, takes
+ * one token.
+ *
+ * When the bucket is empty a request is queued behind the requests already
+ * waiting, as long as its wait stays within {@code maxWait} milliseconds.
+ * Otherwise it is rejected with a {@link RateLimitExceededException}. A
+ * limiter may be shared by several clients to pace a key used by all of
+ * them.
+ */
+public class RateLimiter {
+    private final double _rate;
+    private final int _burst;
+    private final long _maxWait;
+    private final ConcurrentHashMap<String, Bucket> _buckets = new ConcurrentHashMap<String, Bucket>();
+
+    /**
+     * @param rate number of requests per second allowed per api key
+     * @param burst number of requests that may be sent at once after a
+     * quiet period
+     * @param maxWait maximum time in milliseconds a request is queued
+     * before it is rejected, 0 rejects as soon as the bucket is empty
+     */
+    public RateLimiter(double rate, int burst, long maxWait)
+    {
+        if (rate <= 0 || burst < 1 || maxWait < 0)
+            throw new IllegalArgumentException("Invalid rate limit");
+
+        _rate = rate;
+        _burst = burst;
+        _maxWait = maxWait;
+    }
+
+    public double rate() { return _rate; }
+    public int burst() { return _burst; }
+    public long maxWait() { return _maxWait; }
+
+    /**
+     * Takes a token for a request sent with the api key.
+     *
+     * @param apiKey the api key the request is sent with
+     * @return time in milliseconds the request has to wait before it may be
+     * sent, 0 when it may be sent right away.
+     * @throws RateLimitExceededException when the wait would exceed the
+     * maximum wait. No token is taken in that case.
+     */
+    public long acquire(String apiKey) throws RateLimitExceededException
+    {
+        Bucket bucket = _buckets.get(apiKey);
+
+        if (bucket == null)
+        {
+            Bucket created = new Bucket(_burst);
+
+            bucket = _buckets.putIfAbsent(apiKey, created);
+            bucket = (bucket != null ? bucket : created);
+        }
+
+        return bucket.acquire(System.nanoTime());
+    }
+
+    private class Bucket {
+        private final ReentrantLock _lock = new ReentrantLock();
+        private double _tokens;
+        private long _refilledAt;
+
+        Bucket(double tokens)
+        {
+            _tokens = tokens;
+            _refilledAt = System.nanoTime();
+        }
+
+        long acquire(long now) throws RateLimitExceededException
+        {
+            _lock.lock();
+
+            try {
+                _tokens = Math.min(_burst, _tokens + (now - _refilledAt) * _rate / TimeUnit.SECONDS.toNanos(1));
+                _refilledAt = now;
+
+                // tokens below zero are owed to requests already queued
+                long wait = (_tokens >= 1 ? 0 : (long)Math.ceil((1 - _tokens) * 1000 / _rate));
+
+                if (wait > _maxWait)
+                    throw new RateLimitExceededException(wait);
+
+                _tokens -= 1;
+                return wait;
+            } finally {
+                _lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.mollie.api.http.TransportRequest;
+import com.mollie.api.http.TransportResponse;
+
+/**
+ * Decides whether a failed api call is retried, and how long to wait before
+ * the retry. Transient failures are retried with exponential backoff and
+ * full jitter:
+ *
+ * <ul>
+ * <li>failures to connect, which are always safe to retry;</li>
+ * <li>other communication failures and 5xx responses, for requests that are
+ * safe to repeat: reads, deletes and writes carrying an idempotency key;</li>
+ * <li>429 responses, honouring the Retry-After header.</li>
+ * </ul>
+ *
+ * Each call has a retry budget of a maximum number of retries and a maximum
+ * total time spent waiting between attempts. Instances are immutable.
+ */
+public class RetryPolicy {
+    /**
+     * Default maximum number of retries per call.
+     */
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    /**
+     * Default base delay in milliseconds of the exponential backoff.
+     */
+    public static final long DEFAULT_BASE_DELAY = 100;
+
+    /**
+     * Default maximum delay in milliseconds between two attempts.
+     */
+    public static final long DEFAULT_MAX_DELAY = 5000;
+
+    /**
+     * Default maximum total time in milliseconds spent waiting between the
+     * attempts of a single call.
+     */
+    public static final long DEFAULT_MAX_TOTAL_DELAY = 30000;
+
+    /**
+     * Policy that never retries.
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(0, 0, 0, 0);
+
+    private final int _maxRetries;
+    private final long _baseDelay;
+    private final long _maxDelay;
+    private final long _maxTotalDelay;
+
+    public RetryPolicy() {
+        this(DEFAULT_MAX_RETRIES, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY, DEFAULT_MAX_TOTAL_DELAY);
+    }
+
+    /**
+     * @param maxRetries maximum number of retries per call
+     * @param baseDelay base delay in milliseconds of the exponential backoff
+     * @param maxDelay maximum delay in milliseconds between two attempts
+     * @param maxTotalDelay maximum total time in milliseconds spent waiting
+     * between the attempts of a single call
+     */
+    public RetryPolicy(int maxRetries, long baseDelay, long maxDelay, long maxTotalDelay)
+    {
+        _maxRetries = maxRetries;
+        _baseDelay = baseDelay;
+        _maxDelay = maxDelay;
+        _maxTotalDelay = maxTotalDelay;
+    }
+
+    public int maxRetries() { return _maxRetries; }
+    public long baseDelay() { return _baseDelay; }
+    public long maxDelay() { return _maxDelay; }
+    public long maxTotalDelay() { return _maxTotalDelay; }
+
+    /**
+     * Decides whether an attempt is retried.
+     *
+     * @param request the request of the attempt
+     * @param response the response of the attempt, or null if it failed
+     * @param failure the failure of the attempt, or null if a response was
+     * received
+     * @param retries number of retries done so far
+     * @param delayed total time in milliseconds waited so far
+     * @return time in milliseconds to wait before retrying, or -1 if the
+     * attempt must not be retried.
+     */
+    public long retryDelay(TransportRequest request, TransportResponse response,
+            Throwable failure, int retries, long delayed)
+    {
+        long delay = -1;
+
+        if (retries >= _maxRetries)
+            return -1;
+
+        if (failure != null)
+        {
+            if (isConnectFailure(failure) || isRepeatable(request))
+                delay = backoff(retries);
+        }
+        else if (response.status() == 429)
+        {
+            long retryAfter = retryAfter(response);
+            delay = (retryAfter >= 0 ? retryAfter : backoff(retries));
+        }
+        else if (response.status() >= 500 && isRepeatable(request))
+        {
+            delay = backoff(retries);
+        }
+
+        if (delay >= 0 && delayed + delay > _maxTotalDelay)
+            return -1;
+
+        return delay;
+    }
+
+    /**
+     * @param retries number of retries done so far
+     * @return jittered exponential backoff delay in milliseconds
+     */
+    protected long backoff(int retries)
+    {
+        long cap = _baseDelay << Math.min(retries, 30);
+
+        if (cap <= 0 || cap > _maxDelay)
+            cap = _maxDelay;
+
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /**
+     * @param request the request
+     * @return whether the request can safely be sent more than once.
+     */
+    protected boolean isRepeatable(TransportRequest request)
+    {
+        return !request.method().equals(MollieClient.HTTP_POST)
+            || request.header(MollieClient.IDEMPOTENCY_KEY_HEADER) != null;
+    }
+
+    /**
+     * @param failure the failure
+     * @return whether the failure happened before the request was sent.
+     */
+    protected boolean isConnectFailure(Throwable failure)
+    {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause())
+        {
+            if (cause instanceof ConnectException
+                || cause instanceof NoRouteToHostException
+                || cause instanceof UnknownHostException)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @param response the response
+     * @return the delay in milliseconds requested by the Retry-After header,
+     * or -1 if there is no valid header.
+     */
+    protected long retryAfter(TransportResponse response)
+    {
+        String value = response.header("Retry-After");
+
+        if (value == null)
+            return -1;
+
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+        }
+
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
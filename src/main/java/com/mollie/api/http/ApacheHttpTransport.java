@@ -0,0 +1,427 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.protocol.HttpContext;
+
+import com.mollie.api.MollieClient;
+
+/**
+ * Transport based on Apache HttpClient. Blocking calls share a pooled
+ * {@link CloseableHttpClient}, asynchronous calls share a pooled non-blocking
+ * {@link CloseableHttpAsyncClient}. Both pools are created on first use and
+ * released by {@link #close()}, after which the transport may be used again.
+ * The transport guards its state with a lock rather than monitors, so
+ * blocking calls from virtual threads do not pin their carrier thread.
+ */
+public class ApacheHttpTransport implements HttpTransport {
+    /**
+     * Default maximum number of pooled connections.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+
+    /**
+     * Default maximum number of pooled connections per route.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 10;
+
+    /**
+     * Default time in milliseconds a connection is kept alive when the server
+     * does not send a Keep-Alive header.
+     */
+    public static final long DEFAULT_KEEP_ALIVE = 30000;
+
+    /**
+     * Default time in milliseconds after which idle connections are evicted
+     * from the pool.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = 60000;
+
+    /**
+     * Default number of I/O threads used for asynchronous calls.
+     */
+    public static final int DEFAULT_IO_THREADS = 2;
+
+    protected volatile int _maxConnections = DEFAULT_MAX_CONNECTIONS;
+    protected volatile int _maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    protected volatile long _keepAlive = DEFAULT_KEEP_ALIVE;
+    protected volatile long _idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    protected volatile int _ioThreads = DEFAULT_IO_THREADS;
+
+    protected final ReentrantLock _lock = new ReentrantLock();
+    protected PoolingHttpClientConnectionManager _connectionManager;
+    protected volatile CloseableHttpClient _httpClient;
+    protected PoolingNHttpClientConnectionManager _asyncConnectionManager;
+    protected volatile CloseableHttpAsyncClient _httpAsyncClient;
+
+    public int maxConnections() { return _maxConnections; }
+    public int maxConnectionsPerRoute() { return _maxConnectionsPerRoute; }
+    public long keepAlive() { return _keepAlive; }
+    public long idleTimeout() { return _idleTimeout; }
+    public int ioThreads() { return _ioThreads; }
+
+    /**
+     * Sets the maximum number of connections kept in each pool.
+     *
+     * @param maxConnections maximum number of connections
+     */
+    public void setMaxConnections(int maxConnections) {
+        _lock.lock();
+
+        try {
+            _maxConnections = maxConnections;
+
+            if (_connectionManager != null)
+                _connectionManager.setMaxTotal(maxConnections);
+            if (_asyncConnectionManager != null)
+                _asyncConnectionManager.setMaxTotal(maxConnections);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the maximum number of connections kept in each pool for a single
+     * route.
+     *
+     * @param maxConnectionsPerRoute maximum number of connections per route
+     */
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        _lock.lock();
+
+        try {
+            _maxConnectionsPerRoute = maxConnectionsPerRoute;
+
+            if (_connectionManager != null)
+                _connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+            if (_asyncConnectionManager != null)
+                _asyncConnectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the time a connection is kept alive when the server does not
+     * specify a keep-alive timeout. Takes effect on the next connection pool
+     * created, either on first use or after {@link #close()}.
+     *
+     * @param keepAlive keep-alive time in milliseconds
+     */
+    public void setKeepAlive(long keepAlive) { _keepAlive = keepAlive; }
+
+    /**
+     * Sets the time after which idle connections are evicted from the pool.
+     * Takes effect on the next connection pool created, either on first use or
+     * after {@link #close()}.
+     *
+     * @param idleTimeout idle time in milliseconds
+     */
+    public void setIdleTimeout(long idleTimeout) { _idleTimeout = idleTimeout; }
+
+    /**
+     * Sets the number of I/O threads used by the non-blocking http engine.
+     * Takes effect on the next engine started, either on first use or after
+     * {@link #close()}.
+     *
+     * @param ioThreads number of I/O threads
+     */
+    public void setIoThreads(int ioThreads) { _ioThreads = ioThreads; }
+
+    public TransportResponse execute(TransportRequest request) throws IOException
+    {
+        final CloseableHttpResponse response = this.httpClient().execute(createRequest(request));
+        HttpEntity entity = response.getEntity();
+        InputStream content = (entity != null ? entity.getContent() : new ByteArrayInputStream(new byte[0]));
+
+        return new TransportResponse(response.getStatusLine().getStatusCode(),
+            headers(response),
+            new FilterInputStream(content) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        response.close();
+                    }
+                }
+            });
+    }
+
+    public CompletableFuture<TransportResponse> executeAsync(TransportRequest request)
+    {
+        final CompletableFuture<TransportResponse> future = new CompletableFuture<TransportResponse>();
+
+        this.httpAsyncClient().execute(createRequest(request), new FutureCallback<HttpResponse>() {
+            public void completed(HttpResponse response) {
+                try {
+                    HttpEntity entity = response.getEntity();
+                    InputStream content = (entity != null ? entity.getContent() : new ByteArrayInputStream(new byte[0]));
+
+                    future.complete(new TransportResponse(
+                        response.getStatusLine().getStatusCode(),
+                        headers(response), content));
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            public void failed(Exception e) {
+                future.completeExceptionally(e);
+            }
+
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Closes the connection pools and releases all pooled connections. The
+     * transport can still be used afterwards, in which case new pools are
+     * created on the next call.
+     *
+     * @throws IOException if a pool could not be closed.
+     */
+    public void close() throws IOException
+    {
+        CloseableHttpClient httpclient = null;
+        CloseableHttpAsyncClient httpAsyncClient = null;
+
+        _lock.lock();
+
+        try {
+            httpclient = _httpClient;
+            httpAsyncClient = _httpAsyncClient;
+
+            _httpClient = null;
+            _connectionManager = null;
+            _httpAsyncClient = null;
+            _asyncConnectionManager = null;
+        } finally {
+            _lock.unlock();
+        }
+
+        try {
+            if (httpclient != null) {
+                httpclient.close();
+            }
+        } finally {
+            if (httpAsyncClient != null) {
+                httpAsyncClient.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the pooled http client used for blocking calls, creating it on
+     * first use.
+     *
+     * @return the shared http client
+     */
+    protected CloseableHttpClient httpClient()
+    {
+        CloseableHttpClient httpClient = _httpClient;
+
+        if (httpClient != null)
+            return httpClient;
+
+        _lock.lock();
+
+        try {
+            if (_httpClient == null)
+                _httpClient = this.createHttpClient();
+
+            return _httpClient;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    private CloseableHttpClient createHttpClient()
+    {
+        _connectionManager = new PoolingHttpClientConnectionManager();
+        _connectionManager.setMaxTotal(_maxConnections);
+        _connectionManager.setDefaultMaxPerRoute(_maxConnectionsPerRoute);
+
+        return HttpClientBuilder.create()
+            .setConnectionManager(_connectionManager)
+            .setKeepAliveStrategy(this.keepAliveStrategy())
+            .evictExpiredConnections()
+            .evictIdleConnections(_idleTimeout, TimeUnit.MILLISECONDS)
+            // compression is negotiated by MollieClient for every transport
+            .disableContentCompression()
+            .build();
+    }
+
+    /**
+     * Returns the non-blocking http client used for asynchronous calls,
+     * creating and starting it on first use.
+     *
+     * @return the shared non-blocking http client
+     */
+    protected CloseableHttpAsyncClient httpAsyncClient()
+    {
+        CloseableHttpAsyncClient httpAsyncClient = _httpAsyncClient;
+
+        if (httpAsyncClient != null)
+            return httpAsyncClient;
+
+        _lock.lock();
+
+        try {
+            if (_httpAsyncClient == null)
+                _httpAsyncClient = this.createHttpAsyncClient();
+
+            return _httpAsyncClient;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    private CloseableHttpAsyncClient createHttpAsyncClient()
+    {
+        CloseableHttpAsyncClient httpAsyncClient = null;
+
+        try {
+            IOReactorConfig ioConfig = IOReactorConfig.custom()
+                .setIoThreadCount(_ioThreads)
+                .build();
+
+            _asyncConnectionManager = new PoolingNHttpClientConnectionManager(
+                new DefaultConnectingIOReactor(ioConfig));
+        } catch (IOReactorException e) {
+            throw new IllegalStateException("Unable to start the non-blocking http engine", e);
+        }
+
+        _asyncConnectionManager.setMaxTotal(_maxConnections);
+        _asyncConnectionManager.setDefaultMaxPerRoute(_maxConnectionsPerRoute);
+
+        httpAsyncClient = HttpAsyncClients.custom()
+            .setConnectionManager(_asyncConnectionManager)
+            .setKeepAliveStrategy(this.keepAliveStrategy())
+            .build();
+        httpAsyncClient.start();
+
+        return httpAsyncClient;
+    }
+
+    /**
+     * @return keep-alive strategy honouring the Keep-Alive header of the
+     * server and falling back to the configured keep-alive time.
+     */
+    protected ConnectionKeepAliveStrategy keepAliveStrategy()
+    {
+        final long keepAlive = _keepAlive;
+
+        return new ConnectionKeepAliveStrategy() {
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                long duration = DefaultConnectionKeepAliveStrategy.INSTANCE
+                    .getKeepAliveDuration(response, context);
+
+                return (duration > 0 ? duration : keepAlive);
+            }
+        };
+    }
+
+    /**
+     * Converts a transport request into an Apache http request.
+     *
+     * @param request the transport request
+     * @return the Apache http request
+     */
+    protected HttpRequestBase createRequest(TransportRequest request)
+    {
+        HttpRequestBase action = null;
+        String method = request.method();
+
+        if (method.equals(MollieClient.HTTP_POST)) {
+            action = new HttpPost(request.uri());
+        } else if (method.equals(MollieClient.HTTP_DELETE)) {
+            action = new HttpDelete(request.uri());
+        } else {
+            action = new HttpGet(request.uri());
+        }
+
+        if (request.body() != null && action instanceof HttpPost) {
+            ((HttpPost)action).setEntity(new ByteArrayEntity(request.body()));
+        }
+
+        for (Map.Entry<String, String> header : request.headers().entrySet()) {
+            action.setHeader(header.getKey(), header.getValue());
+        }
+
+        return action;
+    }
+
+    private static Map<String, String> headers(HttpResponse response)
+    {
+        LinkedHashMap<String, String> headers = new LinkedHashMap<String, String>();
+
+        for (Header header : response.getAllHeaders()) {
+            headers.put(header.getName(), header.getValue());
+        }
+
+        return headers;
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.http;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Placeholder for the java.net.http transport on runtimes older than Java 11.
+ * The library jar carries the real implementation in META-INF/versions/11,
+ * which is picked up automatically; on older runtimes this class cannot be
+ * instantiated.
+ */
+public class HttpClientTransport implements HttpTransport {
+    /**
+     * @return whether the runtime provides the java.net.http client.
+     */
+    public static boolean isSupported()
+    {
+        return false;
+    }
+
+    /**
+     * @throws UnsupportedOperationException always
+     */
+    public HttpClientTransport() {
+        throw unsupported();
+    }
+
+    /**
+     * @param executor executor used for asynchronous calls
+     * @throws UnsupportedOperationException always
+     */
+    public HttpClientTransport(Executor executor) {
+        throw unsupported();
+    }
+
+    private static UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("The java.net.http client requires Java 11 or later");
+    }
+
+    // never called, no instance can be created
+
+    public TransportResponse execute(TransportRequest request) throws IOException { throw unsupported(); }
+    public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) { throw unsupported(); }
+    public void close() throws IOException { throw unsupported(); }
+}
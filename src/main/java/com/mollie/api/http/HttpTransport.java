@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transport used by {@link com.mollie.api.MollieClient} to send requests to
+ * the remote API. Implementations must be safe for use by multiple threads.
+ *
+ * @see ApacheHttpTransport
+ * @see JdkHttpTransport
+ * @see HttpClientTransport
+ * @see StubHttpTransport
+ */
+public interface HttpTransport extends Closeable {
+    /**
+     * Execute a request, blocking the calling thread until the response
+     * headers have been received. The caller must close the returned response.
+     *
+     * @param request the request to execute
+     * @return the response
+     * @throws IOException when there is a problem communicating with the server.
+     */
+    TransportResponse execute(TransportRequest request) throws IOException;
+
+    /**
+     * Execute a request without blocking the calling thread. The caller must
+     * close the returned response.
+     *
+     * @param request the request to execute
+     * @return future completing with the response, or completing
+     * exceptionally with an {@link IOException} when there is a problem
+     * communicating with the server.
+     */
+    CompletableFuture<TransportResponse> executeAsync(TransportRequest request);
+}
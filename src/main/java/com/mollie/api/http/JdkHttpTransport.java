@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.mollie.api.VirtualThreads;
+
+/**
+ * Transport based on the HttpURLConnection client built into the JDK.
+ * Connections are kept alive and reused by the JDK itself, so no additional
+ * dependencies are needed. Asynchronous calls are executed as blocking calls
+ * on an executor. Requests are sent with HTTP/1.1; on Java 11 and later
+ * {@link HttpClientTransport} sends them with HTTP/2.
+ */
+public class JdkHttpTransport implements HttpTransport {
+    protected final Executor _executor;
+    protected final ExecutorService _ownedExecutor;
+    protected int _connectTimeout;
+    protected int _readTimeout;
+
+    /**
+     * Creates a transport running asynchronous calls on its own executor,
+     * which is shut down by {@link #close()}. On Java 21 and later every call
+     * runs on a new virtual thread, otherwise on a cached thread pool.
+     */
+    public JdkHttpTransport() {
+        _ownedExecutor = (VirtualThreads.isSupported() ?
+            VirtualThreads.newExecutor("mollie-http-") : newCachedThreadPool());
+        _executor = _ownedExecutor;
+    }
+
+    private static ExecutorService newCachedThreadPool() {
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger _count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "mollie-http-" + _count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Creates a transport running asynchronous calls on the supplied executor.
+     *
+     * @param executor executor used for asynchronous calls
+     */
+    public JdkHttpTransport(Executor executor) {
+        _ownedExecutor = null;
+        _executor = executor;
+    }
+
+    public int connectTimeout() { return _connectTimeout; }
+    public int readTimeout() { return _readTimeout; }
+
+    /**
+     * @param connectTimeout connect timeout in milliseconds, 0 waits forever.
+     */
+    public void setConnectTimeout(int connectTimeout) { _connectTimeout = connectTimeout; }
+
+    /**
+     * @param readTimeout read timeout in milliseconds, 0 waits forever.
+     */
+    public void setReadTimeout(int readTimeout) { _readTimeout = readTimeout; }
+
+    public TransportResponse execute(TransportRequest request) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection)request.uri().toURL().openConnection();
+
+        connection.setRequestMethod(request.method());
+        connection.setConnectTimeout(_connectTimeout);
+        connection.setReadTimeout(_readTimeout);
+        connection.setUseCaches(false);
+
+        for (Map.Entry<String, String> header : request.headers().entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+
+        if (request.body() != null)
+        {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(request.body().length);
+
+            OutputStream out = connection.getOutputStream();
+
+            try {
+                out.write(request.body());
+            } finally {
+                out.close();
+            }
+        }
+
+        int status = connection.getResponseCode();
+        InputStream body = (status >= 400 ? connection.getErrorStream() : connection.getInputStream());
+        LinkedHashMap<String, String> headers = new LinkedHashMap<String, String>();
+
+        for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+            if (header.getKey() != null && !header.getValue().isEmpty())
+                headers.put(header.getKey(), header.getValue().get(0));
+        }
+
+        return new TransportResponse(status, headers,
+            (body != null ? body : new ByteArrayInputStream(new byte[0])));
+    }
+
+    public CompletableFuture<TransportResponse> executeAsync(final TransportRequest request)
+    {
+        final CompletableFuture<TransportResponse> future = new CompletableFuture<TransportResponse>();
+
+        _executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    future.complete(execute(request));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Shuts down the executor of this transport if it created one itself.
+     */
+    public void close() throws IOException
+    {
+        if (_ownedExecutor != null)
+            _ownedExecutor.shutdown();
+    }
+}
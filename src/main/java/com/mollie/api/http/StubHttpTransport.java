@@ -0,0 +1,279 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.mollie.api.MollieClient;
+
+/**
+ * In-memory transport returning canned responses, for use in tests and
+ * benchmarks. Responses are registered per http method and api method, e.g.
+ * <code>respond("GET", "payments/tr_d0b0E3EA3v", json)</code>. When several
+ * responses are registered for the same call they are returned in order, the
+ * last one being repeated. Every executed request is recorded, unless
+ * recording is turned off for long running benchmarks.
+ */
+public class StubHttpTransport implements HttpTransport {
+    private final Map<String, ArrayDeque<Object>> _responses = new HashMap<String, ArrayDeque<Object>>();
+    private final List<TransportRequest> _requests = new ArrayList<TransportRequest>();
+    private boolean _recording = true;
+    private final ReentrantLock _lock = new ReentrantLock();
+
+    /**
+     * Registers a successful json response.
+     *
+     * @param method the http method
+     * @param apiMethod the api method, including the query string
+     * @param body the response body
+     * @return this transport
+     */
+    public StubHttpTransport respond(String method, String apiMethod, String body) {
+        return respond(method, apiMethod, 200, body);
+    }
+
+    /**
+     * Registers a json response.
+     *
+     * @param method the http method
+     * @param apiMethod the api method, including the query string
+     * @param status the http status code
+     * @param body the response body
+     * @return this transport
+     */
+    public StubHttpTransport respond(String method, String apiMethod, int status, String body) {
+        return respond(method, apiMethod, new StubResponse(status,
+            Collections.singletonMap("Content-Type", "application/json"),
+            body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Registers a response with custom headers.
+     *
+     * @param method the http method
+     * @param apiMethod the api method, including the query string
+     * @param status the http status code
+     * @param headers response headers
+     * @param body the raw response body
+     * @return this transport
+     */
+    public StubHttpTransport respond(String method, String apiMethod, int status,
+            Map<String, String> headers, byte[] body) {
+        return respond(method, apiMethod, new StubResponse(status, headers, body));
+    }
+
+    /**
+     * Registers a failure to communicate with the server.
+     *
+     * @param method the http method
+     * @param apiMethod the api method, including the query string
+     * @param failure the exception to throw
+     * @return this transport
+     */
+    public StubHttpTransport fail(String method, String apiMethod, IOException failure) {
+        return respond(method, apiMethod, failure);
+    }
+
+    private StubHttpTransport respond(String method, String apiMethod, Object response)
+    {
+        String key = method + " " + apiMethod;
+
+        _lock.lock();
+
+        try {
+            ArrayDeque<Object> queue = _responses.get(key);
+
+            if (queue == null) {
+                queue = new ArrayDeque<Object>();
+                _responses.put(key, queue);
+            }
+
+            queue.add(response);
+            return this;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Turns recording of executed requests on or off. Recording is on by
+     * default.
+     *
+     * @param recording whether executed requests are recorded
+     * @return this transport
+     */
+    public StubHttpTransport setRecording(boolean recording) {
+        _lock.lock();
+
+        try {
+            _recording = recording;
+            return this;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return all requests executed so far, in order.
+     */
+    public List<TransportRequest> requests() {
+        _lock.lock();
+
+        try {
+            return new ArrayList<TransportRequest>(_requests);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @param method the http method
+     * @param apiMethod the api method, including the query string
+     * @return number of requests executed for the api call.
+     */
+    public int requestCount(String method, String apiMethod)
+    {
+        int count = 0;
+
+        for (TransportRequest request : requests()) {
+            if (request.method().equals(method) && apiMethod(request).equals(apiMethod))
+                count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Removes all registered responses and recorded requests.
+     */
+    public void reset() {
+        _lock.lock();
+
+        try {
+            _responses.clear();
+            _requests.clear();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    public TransportResponse execute(TransportRequest request) throws IOException
+    {
+        Object response = null;
+
+        String key = request.method() + " " + apiMethod(request);
+
+        _lock.lock();
+
+        try {
+            ArrayDeque<Object> queue = _responses.get(key);
+
+            if (_recording)
+                _requests.add(request);
+
+            if (queue != null)
+                response = (queue.size() > 1 ? queue.poll() : queue.peek());
+        } finally {
+            _lock.unlock();
+        }
+
+        if (response == null) {
+            String error = "{\"error\":{\"type\":\"request\",\"message\":\"No stubbed response for "
+                + request.method() + " " + apiMethod(request) + "\"}}";
+
+            return new StubResponse(404,
+                Collections.singletonMap("Content-Type", "application/json"),
+                error.getBytes(StandardCharsets.UTF_8)).toResponse();
+        } else if (response instanceof IOException) {
+            throw (IOException)response;
+        }
+
+        return ((StubResponse)response).toResponse();
+    }
+
+    public CompletableFuture<TransportResponse> executeAsync(TransportRequest request)
+    {
+        CompletableFuture<TransportResponse> future = new CompletableFuture<TransportResponse>();
+
+        try {
+            future.complete(execute(request));
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    public void close() throws IOException {
+    }
+
+    /**
+     * @param request the request
+     * @return the api method of a request, relative to the api version.
+     */
+    private static String apiMethod(TransportRequest request)
+    {
+        String path = request.uri().getRawPath();
+        String query = request.uri().getRawQuery();
+        String prefix = "/" + MollieClient.API_VERSION + "/";
+        int index = path.indexOf(prefix);
+
+        if (index >= 0)
+            path = path.substring(index + prefix.length());
+
+        return (query != null ? path + "?" + query : path);
+    }
+
+    private static class StubResponse {
+        final int status;
+        final Map<String, String> headers;
+        final byte[] body;
+
+        StubResponse(int status, Map<String, String> headers, byte[] body) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        TransportResponse toResponse() {
+            return new TransportResponse(status, headers, new ByteArrayInputStream(body));
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Response received through a {@link HttpTransport}. The body is exposed as a
+ * stream which must be released by closing the response.
+ */
+public class TransportResponse implements Closeable {
+    private final int _status;
+    private final Map<String, String> _headers;
+    private final CountingInputStream _body;
+    private final InputStream _content;
+
+    /**
+     * @param status the http status code
+     * @param headers response headers, names are matched case insensitively
+     * @param body the response body
+     */
+    public TransportResponse(int status, Map<String, String> headers, InputStream body)
+    {
+        TreeMap<String, String> map = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+
+        if (headers != null)
+            map.putAll(headers);
+
+        _status = status;
+        _headers = Collections.unmodifiableMap(map);
+        _body = (body != null ? new CountingInputStream(body) : null);
+        _content = _body;
+    }
+
+    private TransportResponse(TransportResponse response, InputStream content)
+    {
+        _status = response._status;
+        _headers = response._headers;
+        _body = response._body;
+        _content = content;
+    }
+
+    public int status() { return _status; }
+    public Map<String, String> headers() { return _headers; }
+    public String header(String name) { return _headers.get(name); }
+    public InputStream body() { return _content; }
+
+    /**
+     * @return length in bytes of the body as read from {@link #body()},
+     * taken from the Content-Length header, or -1 if it is not known.
+     */
+    public long contentLength()
+    {
+        String length = header("Content-Length");
+
+        if (length == null || _content != _body || header("Content-Encoding") != null)
+            return -1;
+
+        try {
+            return Long.parseLong(length.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return number of body bytes read so far, as received before any
+     * decompression.
+     */
+    public long bytesRead() { return (_body != null ? _body.count : 0); }
+
+    /**
+     * Returns this response with a body that is decompressed while it is
+     * read when the Content-Encoding header is gzip, or this response
+     * otherwise.
+     *
+     * @return the response with a decoded body
+     * @throws IOException if the compressed body could not be read.
+     */
+    public TransportResponse decoded() throws IOException
+    {
+        String encoding = header("Content-Encoding");
+
+        if (_body == null || encoding == null || !encoding.trim().equalsIgnoreCase("gzip"))
+            return this;
+
+        try {
+            return new TransportResponse(this, new GZIPInputStream(_body));
+        } catch (EOFException e) {
+            _body.close();
+            return new TransportResponse(this, new ByteArrayInputStream(new byte[0]));
+        }
+    }
+
+    /**
+     * Releases the response body, allowing the underlying connection to be
+     * reused.
+     *
+     * @throws IOException if the body could not be released.
+     */
+    public void close() throws IOException
+    {
+        if (_content != null)
+            _content.close();
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = super.read();
+
+            if (b >= 0)
+                count++;
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int read = super.read(b, off, len);
+
+            if (read > 0)
+                count += read;
+
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            long skipped = super.skip(n);
+
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return false;
+        }
+    }
+}
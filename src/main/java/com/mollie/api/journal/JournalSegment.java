@@ -0,0 +1,248 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.journal;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A journal file, memory mapped as a whole. Records are laid out back to
+ * back from the start of the file:
+ *
+ * <pre>
+ * int  length of the body
+ * int  crc32 of the body
+ * body: byte type, short length of the id, id, json
+ * </pre>
+ *
+ * The unused remainder of the file is zero, so a zero length marks the end
+ * of the records. A record cut short by a crash fails its checksum and ends
+ * the records as well.
+ *
+ * Not thread safe. Buffers are positioned through {@link Buffer} so the
+ * classes also run on Java 8 when compiled by a later JDK.
+ */
+class JournalSegment {
+    static final String SUFFIX = ".journal";
+    static final int HEADER = 8;
+
+    /**
+     * Receives the records found when a segment is scanned.
+     */
+    interface Visitor {
+        void record(byte type, String id, int offset, int length, int crc);
+    }
+
+    private final long _sequence;
+    private final Path _path;
+    private final FileChannel _channel;
+    private final MappedByteBuffer _buffer;
+
+    private JournalSegment(long sequence, Path path, FileChannel channel, int size) throws IOException
+    {
+        _sequence = sequence;
+        _path = path;
+        _channel = channel;
+        _buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Creates a new segment file.
+     *
+     * @param directory directory of the journal
+     * @param sequence sequence number of the segment
+     * @param capacity size of the file in bytes
+     * @return the segment, positioned at its start
+     * @throws IOException if the file could not be created
+     */
+    static JournalSegment create(Path directory, long sequence, int capacity) throws IOException
+    {
+        Path path = directory.resolve(name(sequence));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        return new JournalSegment(sequence, path, channel, capacity);
+    }
+
+    /**
+     * Opens an existing segment file.
+     *
+     * @param path path of the file
+     * @param sequence sequence number of the segment
+     * @return the segment, positioned at its start
+     * @throws IOException if the file could not be opened
+     */
+    static JournalSegment open(Path path, long sequence) throws IOException
+    {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        return new JournalSegment(sequence, path, channel, (int)Math.min(Integer.MAX_VALUE, channel.size()));
+    }
+
+    /**
+     * @param sequence sequence number of a segment
+     * @return file name of the segment.
+     */
+    static String name(long sequence) {
+        return String.format("%016d%s", sequence, SUFFIX);
+    }
+
+    long sequence() { return _sequence; }
+    int remaining() { return _buffer.remaining(); }
+
+    /**
+     * Reads the records from the start of the segment, leaving the segment
+     * positioned after the last valid record.
+     *
+     * @param visitor receives the records
+     */
+    void scan(Visitor visitor)
+    {
+        ByteBuffer body = _buffer.duplicate();
+        CRC32 crc32 = new CRC32();
+        int offset = 0;
+
+        while (_buffer.capacity() - offset >= HEADER)
+        {
+            int length = _buffer.getInt(offset);
+            int crc = _buffer.getInt(offset + 4);
+            int start = offset + HEADER;
+
+            if (length < 3 || length > _buffer.capacity() - start)
+                break;
+
+            ((Buffer)body).limit(start + length);
+            ((Buffer)body).position(start);
+            crc32.reset();
+            crc32.update(body);
+
+            if ((int)crc32.getValue() != crc)
+                break;
+
+            visitor.record(_buffer.get(start), readId(start), offset, length, crc);
+            offset = start + length;
+        }
+
+        ((Buffer)_buffer).position(offset);
+    }
+
+    /**
+     * Appends a record, which must fit in the remainder of the segment.
+     *
+     * @param body body of the record
+     * @param crc checksum of the body
+     * @return offset of the record
+     */
+    int append(byte[] body, int crc)
+    {
+        int offset = _buffer.position();
+
+        _buffer.putInt(body.length).putInt(crc).put(body);
+
+        return offset;
+    }
+
+    /**
+     * @param offset offset of a record
+     * @param length length of its body
+     * @return the body of the record
+     */
+    byte[] body(int offset, int length)
+    {
+        byte[] body = new byte[length];
+        ByteBuffer record = _buffer.duplicate();
+
+        ((Buffer)record).position(offset + HEADER);
+        record.get(body);
+
+        return body;
+    }
+
+    /**
+     * @param offset offset of a record
+     * @param body a record body
+     * @return whether the body of the record equals the given body.
+     */
+    boolean matches(int offset, byte[] body)
+    {
+        int start = offset + HEADER;
+
+        for (int i = 0; i < body.length; i++)
+        {
+            if (_buffer.get(start + i) != body[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    void force() {
+        _buffer.force();
+    }
+
+    void close() throws IOException {
+        _channel.close();
+    }
+
+    /**
+     * Closes and removes the segment file.
+     */
+    void delete() throws IOException
+    {
+        _channel.close();
+
+        try {
+            Files.deleteIfExists(_path);
+        } catch (IOException e) {
+            // mapped files cannot be removed on some platforms
+            _path.toFile().deleteOnExit();
+        }
+    }
+
+    private String readId(int start)
+    {
+        int length = _buffer.getShort(start + 1) & 0xffff;
+        byte[] id = new byte[length];
+        ByteBuffer record = _buffer.duplicate();
+
+        ((Buffer)record).position(start + 3);
+        record.get(id);
+
+        return new String(id, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,535 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import com.mollie.api.JsonCodec;
+import com.mollie.api.objects.Payment;
+import com.mollie.api.objects.PaymentRefund;
+
+/**
+ * Append-only local journal of {@link Payment} and {@link PaymentRefund}
+ * snapshots. Set on a {@link com.mollie.api.MollieClient} it records every
+ * payment and refund the client receives, so a local mirror survives a
+ * restart without listing everything again.
+ *
+ * Snapshots are appended to memory mapped segment files in a directory.
+ * An in-memory index maps every id to its latest snapshot; it is rebuilt
+ * when the journal is opened by scanning the segments, which reads the ids
+ * but does not decode any json. A snapshot equal to the latest one of the
+ * same object is not appended again. Superseded snapshots are dropped by
+ * {@link #compact()}, which copies the latest snapshots into new segments
+ * before removing the old ones, so a crash during compaction loses
+ * nothing.
+ *
+ * Appends reach the operating system right away but are only forced to
+ * disk by {@link #flush()} and {@link #close()}. A client does not fail a
+ * call when appending its result fails; such failures are counted by
+ * {@link #failures()}, so a journal that stopped recording can be noticed.
+ * Instances are thread safe;
+ * a directory must not be opened by more than one journal at a time.
+ */
+public class PaymentJournal implements Closeable {
+    public static final int DEFAULT_SEGMENT_SIZE = 16 << 20;
+
+    private static final byte PAYMENT = 1;
+    private static final byte REFUND = 2;
+
+    private final Path _directory;
+    private final int _segmentSize;
+    private final JsonCodec _codec = new JsonCodec();
+
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final CRC32 _crc32 = new CRC32();
+    private List<JournalSegment> _segments = new ArrayList<JournalSegment>();
+    private JournalSegment _active;
+    private long _nextSequence = 1;
+    private long _records;
+    private boolean _closed;
+    private long _failures;
+    private IOException _lastFailure;
+
+    /**
+     * Location of the latest snapshot of each object, in the order the
+     * snapshots were appended.
+     */
+    private LinkedHashMap<String, Location> _payments = new LinkedHashMap<String, Location>();
+    private LinkedHashMap<String, Location> _refunds = new LinkedHashMap<String, Location>();
+
+    /**
+     * Opens the journal in a directory, creating the directory if needed,
+     * with segments of {@link #DEFAULT_SEGMENT_SIZE} bytes.
+     *
+     * @param directory directory of the journal
+     * @throws IOException if the journal could not be opened
+     */
+    public PaymentJournal(Path directory) throws IOException
+    {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens the journal in a directory, creating the directory if needed.
+     *
+     * @param directory directory of the journal
+     * @param segmentSize size in bytes of new segment files. Segments grow
+     * beyond this size to hold a single larger snapshot.
+     * @throws IOException if the journal could not be opened
+     */
+    public PaymentJournal(Path directory, int segmentSize) throws IOException
+    {
+        if (segmentSize < 1024)
+            throw new IllegalArgumentException("Segments must hold at least 1024 bytes");
+
+        _directory = Files.createDirectories(directory);
+        _segmentSize = segmentSize;
+
+        TreeMap<Long, Path> files = new TreeMap<Long, Path>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + JournalSegment.SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+
+                try {
+                    files.put(Long.parseLong(name.substring(0, name.length() - JournalSegment.SUFFIX.length())), file);
+                } catch (NumberFormatException e) {
+                    // not a segment
+                }
+            }
+        }
+
+        for (Map.Entry<Long, Path> file : files.entrySet())
+        {
+            final JournalSegment segment = JournalSegment.open(file.getValue(), file.getKey());
+
+            segment.scan((type, id, offset, length, crc) -> {
+                LinkedHashMap<String, Location> index = (type == PAYMENT ? _payments : _refunds);
+
+                index.remove(id);
+                index.put(id, new Location(segment, offset, length, crc));
+                _records++;
+            });
+
+            _segments.add(segment);
+            _active = segment;
+            _nextSequence = file.getKey() + 1;
+        }
+    }
+
+    /**
+     * Appends a snapshot of a payment, unless it equals the latest snapshot
+     * of the payment.
+     *
+     * @param payment the payment
+     * @throws IOException if the snapshot could not be appended
+     */
+    public void append(Payment payment) throws IOException
+    {
+        if (payment != null && payment.id != null)
+            this.append(PAYMENT, payment.id, _codec.toJson(payment));
+    }
+
+    /**
+     * Appends a snapshot of a refund, and of the payment it includes,
+     * unless they equal their latest snapshots.
+     *
+     * @param refund the refund
+     * @throws IOException if the snapshot could not be appended
+     */
+    public void append(PaymentRefund refund) throws IOException
+    {
+        if (refund == null || refund.id == null)
+            return;
+
+        this.append(refund.payment);
+        this.append(REFUND, refund.id, _codec.toJson(refund));
+    }
+
+    /**
+     * @param paymentId id of a payment
+     * @return the latest snapshot of the payment, or null if it has none.
+     * @throws IOException if the snapshot could not be read
+     */
+    public Payment payment(String paymentId) throws IOException {
+        return this.read(_payments, paymentId, Payment.class);
+    }
+
+    /**
+     * @param refundId id of a refund
+     * @return the latest snapshot of the refund, or null if it has none.
+     * @throws IOException if the snapshot could not be read
+     */
+    public PaymentRefund refund(String refundId) throws IOException {
+        return this.read(_refunds, refundId, PaymentRefund.class);
+    }
+
+    /**
+     * @return ids of the payments with a snapshot, in the order their latest
+     * snapshots were appended.
+     */
+    public Set<String> paymentIds() { return this.ids(_payments); }
+
+    /**
+     * @return ids of the refunds with a snapshot, in the order their latest
+     * snapshots were appended.
+     */
+    public Set<String> refundIds() { return this.ids(_refunds); }
+
+    /**
+     * Reads the latest snapshot of every payment.
+     *
+     * @return the payments, in the order their latest snapshots were appended
+     * @throws IOException if a snapshot could not be read
+     */
+    public List<Payment> payments() throws IOException
+    {
+        ArrayList<Payment> payments = new ArrayList<Payment>();
+
+        for (String paymentId : this.paymentIds())
+        {
+            Payment payment = this.payment(paymentId);
+
+            if (payment != null)
+                payments.add(payment);
+        }
+
+        return payments;
+    }
+
+    /**
+     * @return number of snapshots in the journal, including superseded ones.
+     */
+    public long records()
+    {
+        _lock.lock();
+
+        try {
+            return _records;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of latest snapshots in the journal, superseded ones are
+     * dropped by compaction.
+     */
+    public int size()
+    {
+        _lock.lock();
+
+        try {
+            return _payments.size() + _refunds.size();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of snapshots that could not be appended.
+     */
+    public long failures()
+    {
+        _lock.lock();
+
+        try {
+            return _failures;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return the failure of the latest snapshot that could not be appended,
+     * or null if all snapshots were appended.
+     */
+    public IOException lastFailure()
+    {
+        _lock.lock();
+
+        try {
+            return _lastFailure;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Rewrites the journal keeping only the latest snapshot of every object.
+     * Appends wait while the journal is compacted.
+     *
+     * @throws IOException if the journal could not be compacted
+     */
+    public void compact() throws IOException
+    {
+        _lock.lock();
+
+        try {
+            this.ensureOpen();
+
+            List<JournalSegment> old = _segments;
+            LinkedHashMap<String, Location> payments = _payments;
+            LinkedHashMap<String, Location> refunds = _refunds;
+
+            long records = _records;
+            JournalSegment active = _active;
+
+            _segments = new ArrayList<JournalSegment>();
+            _payments = new LinkedHashMap<String, Location>();
+            _refunds = new LinkedHashMap<String, Location>();
+            _active = null;
+            _records = 0;
+
+            try {
+                for (Map.Entry<String, Location> entry : payments.entrySet())
+                    this.copy(_payments, entry.getKey(), entry.getValue());
+
+                for (Map.Entry<String, Location> entry : refunds.entrySet())
+                    this.copy(_refunds, entry.getKey(), entry.getValue());
+
+                for (JournalSegment segment : _segments)
+                    segment.force();
+            } catch (IOException e) {
+                for (JournalSegment segment : _segments)
+                    segment.delete();
+
+                _segments = old;
+                _payments = payments;
+                _refunds = refunds;
+                _active = active;
+                _records = records;
+                throw e;
+            }
+
+            for (JournalSegment segment : old)
+                segment.delete();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Forces the appended snapshots to disk.
+     */
+    public void flush()
+    {
+        _lock.lock();
+
+        try {
+            if (_active != null && !_closed)
+                _active.force();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    public void close() throws IOException
+    {
+        _lock.lock();
+
+        try {
+            if (_closed)
+                return;
+
+            _closed = true;
+
+            if (_active != null)
+                _active.force();
+
+            for (JournalSegment segment : _segments)
+                segment.close();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    private void append(byte type, String id, String json) throws IOException
+    {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        byte[] jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[3 + idBytes.length + jsonBytes.length];
+
+        if (idBytes.length > 0xffff)
+            throw this.failed(new IOException("Id too long to journal: " + id));
+
+        ByteBuffer.wrap(body).put(type).putShort((short)idBytes.length).put(idBytes).put(jsonBytes);
+
+        _lock.lock();
+
+        try {
+            LinkedHashMap<String, Location> index = (type == PAYMENT ? _payments : _refunds);
+            Location latest = index.get(id);
+            int crc = this.crc(body);
+
+            this.ensureOpen();
+
+            if (latest != null && latest.crc == crc && latest.length == body.length
+                    && latest.segment.matches(latest.offset, body))
+                return;
+
+            index.remove(id);
+            index.put(id, this.write(body, crc));
+        } catch (IOException e) {
+            throw this.failed(e);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Counts a snapshot that could not be appended.
+     *
+     * @param failure the failure
+     * @return the failure, to be thrown
+     */
+    private IOException failed(IOException failure)
+    {
+        _lock.lock();
+
+        try {
+            _failures++;
+            _lastFailure = failure;
+            return failure;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Copies a record into the active segment during compaction.
+     */
+    private void copy(LinkedHashMap<String, Location> index, String id, Location location) throws IOException
+    {
+        byte[] body = location.segment.body(location.offset, location.length);
+
+        index.put(id, this.write(body, location.crc));
+    }
+
+    /**
+     * Writes a record to the active segment, starting a new segment when it
+     * does not fit. Must be called while holding the lock.
+     */
+    private Location write(byte[] body, int crc) throws IOException
+    {
+        int size = JournalSegment.HEADER + body.length;
+
+        if (_active == null || _active.remaining() < size)
+        {
+            if (_active != null)
+                _active.force();
+
+            _active = JournalSegment.create(_directory, _nextSequence++, Math.max(_segmentSize, size));
+            _segments.add(_active);
+        }
+
+        _records++;
+        return new Location(_active, _active.append(body, crc), body.length, crc);
+    }
+
+    private <T> T read(LinkedHashMap<String, Location> index, String id, Class<T> type) throws IOException
+    {
+        byte[] body = null;
+
+        _lock.lock();
+
+        try {
+            Location location = index.get(id);
+
+            if (location == null)
+                return null;
+
+            this.ensureOpen();
+            body = location.segment.body(location.offset, location.length);
+        } finally {
+            _lock.unlock();
+        }
+
+        int start = 3 + (((body[1] & 0xff) << 8) | (body[2] & 0xff));
+
+        return _codec.gson().fromJson(new String(body, start, body.length - start, StandardCharsets.UTF_8), type);
+    }
+
+    private Set<String> ids(LinkedHashMap<String, Location> index)
+    {
+        _lock.lock();
+
+        try {
+            return Collections.unmodifiableSet(new LinkedHashSet<String>(index.keySet()));
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    private int crc(byte[] body)
+    {
+        _crc32.reset();
+        _crc32.update(body, 0, body.length);
+
+        return (int)_crc32.getValue();
+    }
+
+    private void ensureOpen() throws IOException
+    {
+        if (_closed)
+            throw new IOException("The journal is closed");
+    }
+
+    private static class Location {
+        final JournalSegment segment;
+        final int offset;
+        final int length;
+        final int crc;
+
+        Location(JournalSegment segment, int offset, int length, int crc)
+        {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.mollie.api.MollieException;
+
+/**
+ * Metrics listener keeping counters and latency histograms per resource and
+ * http method. Recording a call does not lock and, once the resource and
+ * method have been seen, does not allocate. Use {@link #snapshot()} to export
+ * the metrics to a monitoring system.
+ *
+ * <pre>
+ * CallMetrics metrics = new CallMetrics();
+ * client.setMetricsListener(metrics);
+ * ...
+ * for (MetricsSnapshot.Endpoint endpoint : metrics.snapshot().endpoints())
+ *     report(endpoint.resource(), endpoint.method(), endpoint.latency().p99());
+ * </pre>
+ */
+public class CallMetrics implements MetricsListener {
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Endpoint>> _endpoints =
+        new ConcurrentHashMap<String, ConcurrentHashMap<String, Endpoint>>();
+
+    @Override
+    public void callCompleted(String resource, String method, long duration,
+                              long bytesOut, long bytesIn, MollieException error)
+    {
+        Endpoint endpoint = endpoint(resource, method);
+
+        endpoint.calls.increment();
+        endpoint.bytesOut.add(bytesOut);
+        endpoint.bytesIn.add(bytesIn);
+        endpoint.latency.record(duration);
+
+        if (error != null)
+            endpoint.error(error.type != null ? error.type : error.getClass().getSimpleName());
+    }
+
+    /**
+     * @return copy of the metrics recorded so far, ordered by resource and
+     * method.
+     */
+    public MetricsSnapshot snapshot()
+    {
+        List<MetricsSnapshot.Endpoint> endpoints = new ArrayList<MetricsSnapshot.Endpoint>();
+
+        for (Map.Entry<String, ConcurrentHashMap<String, Endpoint>> resource :
+                new TreeMap<String, ConcurrentHashMap<String, Endpoint>>(_endpoints).entrySet())
+        {
+            for (Map.Entry<String, Endpoint> method :
+                    new TreeMap<String, Endpoint>(resource.getValue()).entrySet())
+            {
+                endpoints.add(method.getValue().snapshot(resource.getKey(), method.getKey()));
+            }
+        }
+
+        return new MetricsSnapshot(Collections.unmodifiableList(endpoints));
+    }
+
+    /**
+     * Clears all metrics recorded so far.
+     */
+    public void reset()
+    {
+        _endpoints.clear();
+    }
+
+    private Endpoint endpoint(String resource, String method)
+    {
+        ConcurrentHashMap<String, Endpoint> methods = _endpoints.get(resource);
+
+        if (methods == null)
+            methods = _endpoints.computeIfAbsent(resource, key -> new ConcurrentHashMap<String, Endpoint>());
+
+        Endpoint endpoint = methods.get(method);
+
+        if (endpoint == null)
+            endpoint = methods.computeIfAbsent(method, key -> new Endpoint());
+
+        return endpoint;
+    }
+
+    private static class Endpoint {
+        final LongAdder calls = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder bytesOut = new LongAdder();
+        final LongAdder bytesIn = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+        final ConcurrentHashMap<String, LongAdder> errorTypes = new ConcurrentHashMap<String, LongAdder>();
+
+        void error(String type)
+        {
+            LongAdder count = errorTypes.get(type);
+
+            if (count == null)
+                count = errorTypes.computeIfAbsent(type, key -> new LongAdder());
+
+            errors.increment();
+            count.increment();
+        }
+
+        MetricsSnapshot.Endpoint snapshot(String resource, String method)
+        {
+            TreeMap<String, Long> types = new TreeMap<String, Long>();
+
+            for (Map.Entry<String, LongAdder> type : errorTypes.entrySet())
+                types.put(type.getKey(), type.getValue().sum());
+
+            return new MetricsSnapshot.Endpoint(resource, method, calls.sum(), errors.sum(),
+                Collections.unmodifiableMap(types), bytesOut.sum(), bytesIn.sum(), latency.snapshot());
+        }
+    }
+}
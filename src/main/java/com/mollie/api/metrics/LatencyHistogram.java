@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of latencies in nanoseconds. Values are counted in
+ * log-linear buckets: every power of two is split into 32 buckets, keeping
+ * the relative error of reported percentiles below 3.2% over the whole range
+ * of a long. Recording does not lock and does not allocate.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = bucket(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder _sum = new LongAdder();
+    private final AtomicLong _max = new AtomicLong();
+
+    /**
+     * @param value latency in nanoseconds, negative values are counted as 0
+     */
+    public void record(long value)
+    {
+        long max;
+
+        value = Math.max(0, value);
+        _counts.incrementAndGet(bucket(value));
+        _sum.add(value);
+
+        while (value > (max = _max.get()) && !_max.compareAndSet(max, value))
+            ;
+    }
+
+    /**
+     * @return copy of the current counts. Values recorded concurrently may
+     * or may not be included.
+     */
+    public Snapshot snapshot()
+    {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+
+        for (int i = 0; i < BUCKETS; i++)
+            count += (counts[i] = _counts.get(i));
+
+        return new Snapshot(counts, count, _sum.sum(), _max.get());
+    }
+
+    private static int bucket(long value)
+    {
+        if (value < SUB_BUCKETS)
+            return (int)value;
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+        return (shift << SUB_BUCKET_BITS) + (int)(value >>> shift);
+    }
+
+    private static long highestValue(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+
+        int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+        long mantissa = bucket - ((long)shift << SUB_BUCKET_BITS);
+
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * Immutable copy of a histogram. All values are in nanoseconds.
+     */
+    public static class Snapshot {
+        private final long[] _counts;
+        private final long _count;
+        private final long _sum;
+        private final long _max;
+
+        Snapshot(long[] counts, long count, long sum, long max)
+        {
+            _counts = counts;
+            _count = count;
+            _sum = sum;
+            _max = max;
+        }
+
+        public long count() { return _count; }
+        public long sum() { return _sum; }
+        public long max() { return _max; }
+        public long mean() { return (_count > 0 ? _sum / _count : 0); }
+        public long p50() { return percentile(0.5); }
+        public long p99() { return percentile(0.99); }
+        public long p999() { return percentile(0.999); }
+
+        /**
+         * @param quantile the quantile, between 0 and 1
+         * @return the value at or below which the quantile of the recorded
+         * values falls, 0 when nothing was recorded.
+         */
+        public long percentile(double quantile)
+        {
+            long rank = (long)Math.ceil(Math.min(1, Math.max(0, quantile)) * _count);
+            long seen = 0;
+
+            for (int i = 0; i < _counts.length; i++)
+            {
+                if ((seen += _counts[i]) >= rank && seen > 0)
+                    return Math.min(highestValue(i), _max);
+            }
+
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable copy of the metrics recorded by {@link CallMetrics}, made of
+ * plain values that are easy to map onto any monitoring system.
+ */
+public class MetricsSnapshot {
+    private final List<Endpoint> _endpoints;
+
+    MetricsSnapshot(List<Endpoint> endpoints)
+    {
+        _endpoints = endpoints;
+    }
+
+    /**
+     * @return metrics per resource and http method.
+     */
+    public List<Endpoint> endpoints() { return _endpoints; }
+
+    /**
+     * @param resource the resource
+     * @param method the http method
+     * @return metrics of the resource and http method, or null when no call
+     * was recorded for them.
+     */
+    public Endpoint endpoint(String resource, String method)
+    {
+        for (Endpoint endpoint : _endpoints)
+        {
+            if (endpoint.resource().equals(resource) && endpoint.method().equals(method))
+                return endpoint;
+        }
+
+        return null;
+    }
+
+    /**
+     * Metrics of the calls made with one http method to one resource.
+     */
+    public static class Endpoint {
+        private final String _resource;
+        private final String _method;
+        private final long _calls;
+        private final long _errors;
+        private final Map<String, Long> _errorTypes;
+        private final long _bytesOut;
+        private final long _bytesIn;
+        private final LatencyHistogram.Snapshot _latency;
+
+        Endpoint(String resource, String method, long calls, long errors, Map<String, Long> errorTypes,
+                 long bytesOut, long bytesIn, LatencyHistogram.Snapshot latency)
+        {
+            _resource = resource;
+            _method = method;
+            _calls = calls;
+            _errors = errors;
+            _errorTypes = errorTypes;
+            _bytesOut = bytesOut;
+            _bytesIn = bytesIn;
+            _latency = latency;
+        }
+
+        public String resource() { return _resource; }
+        public String method() { return _method; }
+        public long calls() { return _calls; }
+        public long errors() { return _errors; }
+
+        /**
+         * @return number of errors per error type: the type reported by the
+         * api, or the name of the exception for errors raised by the client.
+         */
+        public Map<String, Long> errorTypes() { return _errorTypes; }
+
+        public long bytesOut() { return _bytesOut; }
+        public long bytesIn() { return _bytesIn; }
+
+        /**
+         * @return histogram of the call durations in nanoseconds.
+         */
+        public LatencyHistogram.Snapshot latency() { return _latency; }
+    }
+}
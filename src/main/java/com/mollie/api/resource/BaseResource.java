@@ -29,23 +29,35 @@
  */
 package com.mollie.api.resource;
 
-import java.net.URISyntaxException;
-import org.apache.http.client.utils.URIBuilder;
-
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.io.EOFException;
+import java.io.IOException;
 import java.lang.reflect.ParameterizedType;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.LinkedHashMap;
-
-import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.mollie.api.MollieClient;
 import com.mollie.api.MollieException;
+import com.mollie.api.http.TransportResponse;
+import com.mollie.api.journal.PaymentJournal;
+import com.mollie.api.metrics.MetricsListener;
+import com.mollie.api.objects.Payment;
+import com.mollie.api.objects.PaymentRefund;
 
 abstract public class BaseResource <T> {
     public static final String REST_CREATE = MollieClient.HTTP_POST;
@@ -59,8 +71,61 @@ abstract public class BaseResource <T> {
      */
     public static final int DEFAULT_LIMIT = 10;
 
+    /**
+     * Maximum number of objects the api returns in a single page.
+     */
+    public static final int MAX_PAGE_SIZE = 250;
+
+    /**
+     * Default number of objects fetched per page when iterating over all
+     * objects. This is the maximum page size supported by the api.
+     */
+    public static final int DEFAULT_PAGE_SIZE = MAX_PAGE_SIZE;
+
+    /**
+     * Class of the objects returned by each resource type, resolved once
+     * from its generic superclass.
+     */
+    private static final ClassValue<Class<?>> RETURNED_CLASSES = new ClassValue<Class<?>>() {
+        @Override
+        protected Class<?> computeValue(Class<?> resource) {
+            ParameterizedType parameterizedType = (ParameterizedType)resource.getGenericSuperclass();
+            return (Class<?>)parameterizedType.getActualTypeArguments()[0];
+        }
+    };
+
+    /**
+     * Default resource name of each resource type: its lower cased class
+     * name, resolved once.
+     */
+    private static final ClassValue<String> RESOURCE_NAMES = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> resource) {
+            String className = resource.getName();
+
+            return className.substring(className.lastIndexOf('.') + 1).toLowerCase();
+        }
+    };
+
     protected MollieClient _api;
 
+    /**
+     * Reads in flight by api path, shared by concurrent reads of the same
+     * object.
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<T>> _reads =
+        new ConcurrentHashMap<String, CompletableFuture<T>>();
+
+    /**
+     * Binds an api response while it is read from a streaming
+     * {@link JsonReader}.
+     *
+     * @param <R> type of the bound result
+     */
+    protected interface ResponseReader<R> {
+        R read(JsonReader reader) throws IOException;
+    }
+
     public BaseResource(MollieClient api)
     {
         _api = api;
@@ -70,20 +135,12 @@ abstract public class BaseResource <T> {
      * @return Default resource name used by this resource when performing api calls.
      */
     protected String getResourceName() {
-        String className = getClass().getName();
-        String resourceName = className;
-        String [] elements = className.split("\\.");
-
-        if (elements.length > 0)
-            resourceName = elements[elements.length-1];
-        return resourceName.toLowerCase();
+        return RESOURCE_NAMES.get(getClass());
     }
 
     @SuppressWarnings("unchecked")
     protected Class<T> returnedClass() {
-         ParameterizedType parameterizedType = (ParameterizedType)getClass()
-                                                     .getGenericSuperclass();
-         return (Class<T>) parameterizedType.getActualTypeArguments()[0];
+        return (Class<T>)RETURNED_CLASSES.get(getClass());
     }
 
     /**
@@ -94,24 +151,15 @@ abstract public class BaseResource <T> {
      * @param dst Target object
      */
     protected void copyInto(T src, T dst) {
-        Field[] fromFields = returnedClass().getDeclaredFields();
-        Object value = null;
+        ObjectCopier.forClass(returnedClass()).copy(src, dst);
+    }
 
-        try {
-            for (Field field : fromFields) {
-                int modifiers = field.getModifiers();
-
-                if ((modifiers & Modifier.PUBLIC) == Modifier.PUBLIC &&
-                    (modifiers & Modifier.FINAL) != Modifier.FINAL &&
-                    (modifiers & Modifier.STATIC) != Modifier.STATIC)
-                {
-                    value = field.get(src);
-                    field.set(dst, value);
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    /**
+     * @param src object to copy, may be null
+     * @return new object with all public properties of src, or null.
+     */
+    private T copyOf(T src) {
+        return returnedClass().cast(ObjectCopier.forClass(returnedClass()).copy(src));
     }
 
     /**
@@ -180,6 +228,183 @@ abstract public class BaseResource <T> {
         return this.rest_list(this.getResourceName(), offset, limit, options);
     }
 
+    /**
+     * Retrieve all objects of a certain resource without blocking the calling
+     * thread.
+     *
+     * @return future completing with the list of fetched objects
+     *
+     * @see #all()
+     * @see #allAsync(int offset, int limit, Map options)
+     */
+    public CompletableFuture<List<T>> allAsync() {
+        return this.allAsync(0, 0, null);
+    }
+
+    /**
+     * Retrieve all objects of a certain resource without blocking the calling
+     * thread.
+     *
+     * @param offset page offset of the objects to retrieve
+     * @param limit maximimum number of objects to retrieve
+     * @return future completing with the list of fetched objects
+     *
+     * @see #all(int offset, int limit)
+     * @see #allAsync(int offset, int limit, Map options)
+     */
+    public CompletableFuture<List<T>> allAsync(int offset, int limit) {
+        return this.allAsync(offset, limit, null);
+    }
+
+    /**
+     * Retrieve all objects of a certain resource without blocking the calling
+     * thread.
+     *
+     * @param offset page offset of the objects to retrieve
+     * @param limit maximimum number of objects to retrieve
+     * @param options additional options to include when fetching objects.
+     * @return future completing with the list of fetched objects, or
+     * completing exceptionally with a {@link MollieException} when the client
+     * is unable to fetch the objects from the server
+     *
+     * @see #all(int offset, int limit, Map options)
+     */
+    public CompletableFuture<List<T>> allAsync(int offset, int limit, Map<String,String> options) {
+        String apiPath = this.listPath(this.getResourceName(), offset, limit, options);
+
+        return this.rest_listAsync(apiPath);
+    }
+
+    /**
+     * Iterate over all objects of a certain resource. Pages are fetched on
+     * demand, and the next page is fetched in the background while the
+     * current one is consumed. A {@link com.mollie.api.UncheckedMollieException}
+     * is thrown by the iterator when a page cannot be fetched.
+     *
+     * @return iterable over all objects
+     *
+     * @see #iterate(int pageSize, Map options)
+     * @see #stream()
+     */
+    public Iterable<T> iterate() {
+        return this.iterate(DEFAULT_PAGE_SIZE, null);
+    }
+
+    /**
+     * Iterate over all objects of a certain resource.
+     *
+     * @param pageSize number of objects to fetch per page, larger values than
+     * {@link #MAX_PAGE_SIZE} are reduced to it
+     * @return iterable over all objects
+     *
+     * @see #iterate(int pageSize, Map options)
+     */
+    public Iterable<T> iterate(int pageSize) {
+        return this.iterate(pageSize, null);
+    }
+
+    /**
+     * Iterate over all objects of a certain resource. Pages are fetched on
+     * demand, and the next page is fetched in the background while the
+     * current one is consumed, so at most two pages are held in memory.
+     * A {@link com.mollie.api.UncheckedMollieException} is thrown by the
+     * iterator when a page cannot be fetched.
+     *
+     * @param pageSize number of objects to fetch per page, larger values than
+     * {@link #MAX_PAGE_SIZE} are reduced to it
+     * @param options additional options to include when fetching objects.
+     * @return iterable over all objects
+     */
+    public Iterable<T> iterate(final int pageSize, final Map<String,String> options) {
+        return () -> this.pageIterator(pageSize, options);
+    }
+
+    /**
+     * Stream all objects of a certain resource.
+     *
+     * @return sequential stream over all objects
+     *
+     * @see #iterate()
+     */
+    public Stream<T> stream() {
+        return this.stream(DEFAULT_PAGE_SIZE, null);
+    }
+
+    /**
+     * Stream all objects of a certain resource.
+     *
+     * @param pageSize number of objects to fetch per page, larger values than
+     * {@link #MAX_PAGE_SIZE} are reduced to it
+     * @return sequential stream over all objects
+     *
+     * @see #iterate(int pageSize)
+     */
+    public Stream<T> stream(int pageSize) {
+        return this.stream(pageSize, null);
+    }
+
+    /**
+     * Stream all objects of a certain resource. Closing the stream stops the
+     * background fetch of the next page.
+     *
+     * @param pageSize number of objects to fetch per page, larger values than
+     * {@link #MAX_PAGE_SIZE} are reduced to it
+     * @param options additional options to include when fetching objects.
+     * @return sequential stream over all objects
+     *
+     * @see #iterate(int pageSize, Map options)
+     */
+    public Stream<T> stream(int pageSize, Map<String,String> options)
+    {
+        PageIterator<T> iterator = this.pageIterator(pageSize, options);
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(iterator::cancel);
+    }
+
+    private PageIterator<T> pageIterator(int pageSize, Map<String,String> options) {
+        int size = pageSize(pageSize);
+
+        return new PageIterator<T>(this.pageFetcher(size, options), size);
+    }
+
+    /**
+     * A listing ends at the first page holding fewer objects than asked
+     * for, so a page size beyond what the api returns would end it after
+     * the first page.
+     *
+     * @param pageSize requested number of objects per page
+     * @return the page size, reduced to {@link #MAX_PAGE_SIZE}
+     */
+    static int pageSize(int pageSize) {
+        return Math.min(pageSize, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Returns a function fetching the page of a listing that starts at a
+     * given offset.
+     *
+     * @param pageSize number of objects to fetch per page
+     * @param options additional options to include when fetching objects.
+     * @return function fetching a page by offset
+     */
+    protected IntFunction<CompletableFuture<List<T>>> pageFetcher(final int pageSize,
+            final Map<String,String> options)
+    {
+        return offset -> {
+            LinkedHashMap<String,String> pageOptions = new LinkedHashMap<String,String>();
+
+            if (options != null)
+                pageOptions.putAll(options);
+
+            pageOptions.remove("offset");
+            pageOptions.remove("count");
+
+            return this.allAsync(offset, pageSize, pageOptions);
+        };
+    }
+
     /**
      * Retrieve information on a single resource from Mollie.
      * 
@@ -194,6 +419,21 @@ abstract public class BaseResource <T> {
         return this.rest_read(this.getResourceName(), resourceId);
     }
 
+    /**
+     * Retrieve information on a single resource from Mollie without blocking
+     * the calling thread.
+     *
+     * @param resourceId Id of the object to retrieve.
+     * @return future completing with the object, or completing exceptionally
+     * with a {@link MollieException} if the client is unable to get the
+     * resource from the server.
+     *
+     * @see #get(String resourceId)
+     */
+    public CompletableFuture<T> getAsync(String resourceId) {
+        return this.rest_readAsync(this.getResourceName(), resourceId);
+    }
+
     /**
      * Create a resource with the remote API.
      * 
@@ -204,8 +444,7 @@ abstract public class BaseResource <T> {
      * on the server.
      */
     public T create(Object data) throws MollieException {
-        Gson gson = new Gson();
-        String encoded = gson.toJson(data);
+        String encoded = _api.codec().toJson(data);
         
         if (encoded != null)
             return this.rest_create(this.getResourceName(), encoded);
@@ -213,6 +452,28 @@ abstract public class BaseResource <T> {
             return null;
     }
 
+    /**
+     * Create a resource with the remote API without blocking the calling
+     * thread.
+     *
+     * @param data an object containing details on the resource. Fields supported
+     * depend on the resource created.
+     * @return future completing with the object, or completing exceptionally
+     * with a {@link MollieException} when the client is unable to create the
+     * resource on the server.
+     *
+     * @see #create(Object data)
+     */
+    public CompletableFuture<T> createAsync(Object data) {
+        String encoded = _api.codec().toJson(data);
+
+        if (encoded == null)
+            return CompletableFuture.completedFuture(null);
+
+        return this.performApiCallAsync(REST_CREATE, this.getResourceName(), encoded,
+            this::readObject);
+    }
+
     /**
      * Creates a resource with the REST API.
      *
@@ -224,19 +485,13 @@ abstract public class BaseResource <T> {
      */
     private T rest_create(String restResource, String body) throws MollieException
     {
-        JsonObject result = this.performApiCall(REST_CREATE, restResource, body);
-
-        if (result != null)
-        {
-            Gson gson = new Gson();
-            return gson.fromJson(result, returnedClass());
-        }
-
-        return null;
+        return this.performApiCall(REST_CREATE, restResource, body, this::readObject);
     }
 
     /**
-     * Retrieves a single object from the REST API.
+     * Retrieves a single object from the REST API. Concurrent reads of the
+     * same object share a single api call, and all receive its result, each
+     * as an object of their own, or its exception.
      *
      * @param restResource resource name
      * @param id Id of the object to retrieve
@@ -247,43 +502,121 @@ abstract public class BaseResource <T> {
     private T rest_read(String restResource, String id) throws MollieException
     {
         String method = restResource + "/" + id;
-        JsonObject result = this.performApiCall(REST_READ, method);
+        CompletableFuture<T> call = new CompletableFuture<T>();
+        CompletableFuture<T> inflight = _reads.putIfAbsent(method, call);
 
-        if (result != null)
-        {
-            Gson gson = new Gson();
-            return gson.fromJson(result, returnedClass());
+        if (inflight != null)
+            return this.copyOf(this.await(inflight));
+
+        try {
+            T result = this.performApiCall(REST_READ, method, null, this::readObject);
+            call.complete(result);
+            return result;
+        } catch (Throwable e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            _reads.remove(method, call);
+        }
+    }
+
+    /**
+     * Retrieves a single object from the REST API without blocking the
+     * calling thread. Concurrent reads of the same object share a single api
+     * call, each receiving an object of their own.
+     *
+     * @param restResource resource name
+     * @param id Id of the object to retrieve
+     * @return future completing with the object
+     *
+     * @see #rest_read(String restResource, String id)
+     */
+    private CompletableFuture<T> rest_readAsync(String restResource, String id)
+    {
+        final String method = restResource + "/" + id;
+        final CompletableFuture<T> call = new CompletableFuture<T>();
+        CompletableFuture<T> inflight = _reads.putIfAbsent(method, call);
+
+        if (inflight != null)
+            return inflight.thenApply(this::copyOf);
+
+        this.performApiCallAsync(REST_READ, method, null, this::readObject)
+            .whenComplete((result, failure) -> {
+                _reads.remove(method, call);
+
+                if (failure != null)
+                    call.completeExceptionally(failure instanceof CompletionException ? failure.getCause() : failure);
+                else
+                    call.complete(result);
+            });
+
+        return call.thenApply(result -> result);
+    }
+
+    /**
+     * Waits for a read started by another thread.
+     *
+     * @param inflight the read in flight
+     * @return result of the read
+     * @throws MollieException the exception of the read
+     */
+    private T await(CompletableFuture<T> inflight) throws MollieException
+    {
+        try {
+            return inflight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MollieException("Interrupted while waiting for Mollie");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof MollieException)
+                throw (MollieException)cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+
+            throw new MollieException("Unable to communicate with Mollie");
         }
+    }
 
-        return null;
+    /**
+     * Binds a single object of the resource type from an api response.
+     *
+     * @param reader reader positioned at the start of the response
+     * @return object
+     * @throws IOException if the response could not be read
+     */
+    private T readObject(JsonReader reader) throws IOException {
+        return this.readObject(reader, returnedClass());
+    }
+
+    /**
+     * Binds a single object from an api response.
+     *
+     * @param reader reader positioned at the start of the object
+     * @param type class of the object
+     * @return object
+     * @throws IOException if the response could not be read
+     */
+    protected <R> R readObject(JsonReader reader, Class<R> type) throws IOException {
+        return _api.codec().adapter(type).read(reader);
     }
 
     /**
      * Creates a valid query string from the supplied options that can be used
-     * as url parameters. The method returns null if there was an error building
-     * the query string.
+     * as url parameters. The method returns null if there are no options.
      * 
      * @param options options to build a query string from
      * @return a valid query string or null.
      */
-    private String buildQueryFromMap(Map<String,String> options)
+    String buildQueryFromMap(Map<String,String> options)
     {
-        URIBuilder ub = null;
-        String queryString = null;
-
-        try {
-            ub = new URIBuilder();
-
-            for (Map.Entry<String, String> entry : options.entrySet()) {
-                ub.addParameter(entry.getKey(), entry.getValue());
-            }
-
-            queryString = ub.build().getQuery();
-        } catch (URISyntaxException e) {
-            e.printStackTrace();
-        }
+        if (options.isEmpty())
+            return null;
 
-        return queryString;
+        return QueryEncoder.appendQuery(new StringBuilder(16 * options.size()), options).toString();
     }
 
     /**
@@ -298,10 +631,50 @@ abstract public class BaseResource <T> {
      */
     private List<T> rest_list(String restResource, int offset, int limit, Map<String,String> options) throws MollieException
     {
-        String query = null;
+        String apiPath = this.listPath(restResource, offset, limit, options);
+
+        return this.rest_list(apiPath);
+    }
+
+    /**
+     * Get a page of objects from the REST API.
+     *
+     * @param apiPath api path of the page, including the query string
+     * @return list of objects
+     * @throws MollieException if there was a problem fetching the objects
+     */
+    protected List<T> rest_list(String apiPath) throws MollieException {
+        return this.performApiCall(REST_LIST, apiPath, null, this::readList);
+    }
+
+    /**
+     * Get a page of objects from the REST API without blocking the calling
+     * thread.
+     *
+     * @param apiPath api path of the page, including the query string
+     * @return future completing with the list of objects, or completing
+     * exceptionally with a {@link MollieException} if there was a problem
+     * fetching the objects
+     */
+    protected CompletableFuture<List<T>> rest_listAsync(String apiPath) {
+        return this.performApiCallAsync(REST_LIST, apiPath, null, this::readList);
+    }
+
+    /**
+     * Builds the api path used to list a collection of objects.
+     *
+     * @param restResource resource name
+     * @param offset page offset of the objects to retrieve
+     * @param limit maximimum number of objects to retrieve
+     * @param options additional options
+     * @return api path including the query string
+     */
+    protected String listPath(String restResource, int offset, int limit, Map<String,String> options)
+    {
+        StringBuilder path = new StringBuilder(restResource.length() + 32).append(restResource).append('?');
 
         if (options == null) {
-            options = new LinkedHashMap<String,String>();
+            return path.append("offset=").append(offset).append("&count=").append(limit).toString();
         }
 
         if (!options.containsKey("offset")) {
@@ -312,95 +685,259 @@ abstract public class BaseResource <T> {
             options.put("count", Integer.toString(limit));
         }
 
-        query = buildQueryFromMap(options);
-        String apiPath = restResource + (query != null ? "?" + query : "");
+        return QueryEncoder.appendQuery(path, options).toString();
+    }
 
-        JsonObject result = this.performApiCall(REST_LIST, apiPath);
+    /**
+     * Binds the objects in the data member of a list response, one by one
+     * as they are read.
+     *
+     * @param reader reader positioned at the start of the response
+     * @return list of objects
+     * @throws IOException if the response could not be read
+     */
+    private List<T> readList(JsonReader reader) throws IOException
+    {
         ArrayList<T> arraylist = new ArrayList<T>();
+        TypeAdapter<T> adapter = _api.codec().adapter(returnedClass());
 
-        if (result != null)
+        reader.beginObject();
+
+        while (reader.hasNext())
         {
-            Gson gson = new Gson();
+            String name = reader.nextName();
 
-            for (JsonElement object : result.get("data").getAsJsonArray())
-                arraylist.add(gson.fromJson(object, returnedClass()));
+            if (name.equals("data") && reader.peek() == JsonToken.BEGIN_ARRAY)
+            {
+                reader.beginArray();
+
+                while (reader.hasNext())
+                    arraylist.add(adapter.read(reader));
+
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
         }
 
+        reader.endObject();
+
         return arraylist;
     }
 
     /**
-     * Perform an API call with an empty body contents, interpret the results
-     * and convert them to the correct object type.
+     * Perform an API call and bind the results while the response is read.
      *
      * @param httpMethod the http method to use
      * @param apiMethod the api method to call
+     * @param httpBody the contents to send to the server.
+     * @param reader binds the response
      *
-     * @return object {@link JsonObject} or null if there was a problem with
-     * the api call.
-     * @throws MollieException if there was an error performing the call or if
-     * the results could not be decoded into a {@link JsonObject}
-     * 
-     * @see #performApiCall(String httpMethod, String apiMethod)
+     * @return the bound result
+     * @throws MollieException if there was an error performing the call, if
+     * the response contains an error or if the results could not be decoded
+     *
+     * @see #performApiCallAsync(String httpMethod, String apiMethod, String httpBody, ResponseReader reader)
      */
-    protected JsonObject performApiCall(String httpMethod, String apiMethod) throws MollieException {
-        return performApiCall(httpMethod, apiMethod, null);
+    protected <R> R performApiCall(String httpMethod,
+                                   String apiMethod,
+                                   String httpBody,
+                                   ResponseReader<R> reader) throws MollieException
+    {
+        long started = System.nanoTime();
+        TransportResponse response = null;
+        MollieException error = null;
+
+        try {
+            response = _api.performHttpRequest(httpMethod, apiMethod, httpBody);
+
+            return this.decodeResponse(response, reader);
+        } catch (MollieException e) {
+            error = e;
+            throw e;
+        } finally {
+            this.recordCall(httpMethod, apiMethod, httpBody, response, error, started);
+        }
     }
 
     /**
-     * Perform an API call, interpret the results and convert them to the
-     * correct object type. 
+     * Perform an API call without blocking the calling thread and bind the
+     * results while the response is read.
      *
      * @param httpMethod the http method to use
      * @param apiMethod the api method to call
      * @param httpBody the contents to send to the server.
+     * @param reader binds the response
      *
-     * @return object {@link JsonObject} or null if there was a problem with
-     * the api call
-     * @throws MollieException if there was an error performing the call or if
-     * the results could not be decoded into a {@link JsonObject}
-     * 
-     * @see #performApiCall(String httpMethod, String apiMethod)
+     * @return future completing with the bound result, or completing
+     * exceptionally with a {@link MollieException} if there was an error
+     * performing the call, if the response contains an error or if the results
+     * could not be decoded.
+     *
+     * @see #performApiCall(String httpMethod, String apiMethod, String httpBody, ResponseReader reader)
      */
-    protected JsonObject performApiCall(String httpMethod,
-                                        String apiMethod,
-                                        String httpBody) throws MollieException
+    protected <R> CompletableFuture<R> performApiCallAsync(String httpMethod,
+                                                           String apiMethod,
+                                                           String httpBody,
+                                                           ResponseReader<R> reader)
     {
-        String result = _api.performHttpCall(httpMethod, apiMethod, httpBody);
-        JsonParser parser = new JsonParser();
-        JsonElement element = null;
-        JsonObject object = null;
+        long started = System.nanoTime();
+
+        return _api.performHttpRequestAsync(httpMethod, apiMethod, httpBody)
+            .handle((response, failure) -> {
+                Throwable cause = (failure instanceof CompletionException && failure.getCause() != null ?
+                    failure.getCause() : failure);
+                MollieException error = (cause instanceof MollieException ? (MollieException)cause : null);
+
+                try {
+                    if (failure == null)
+                        return this.decodeResponse(response, reader);
+                } catch (MollieException e) {
+                    error = e;
+                    cause = e;
+                } finally {
+                    this.recordCall(httpMethod, apiMethod, httpBody, response, error, started);
+                }
+
+                throw new CompletionException(cause);
+            });
+    }
+
+    /**
+     * Appends the payments and refunds in a decoded response to the journal
+     * of the client. The call itself succeeded, so a journal failure is
+     * printed rather than thrown; the journal counts it in
+     * {@link PaymentJournal#failures()}.
+     */
+    private void journal(Object result)
+    {
+        PaymentJournal journal = _api.journal();
+
+        if (journal == null || result == null)
+            return;
 
         try {
-            if ((element = parser.parse(result)) != null) {
-                if (element.isJsonObject()) {
-                    object = element.getAsJsonObject();
-                }
+            if (result instanceof List) {
+                for (Object object : (List<?>)result)
+                    journal(journal, object);
+            } else {
+                journal(journal, result);
             }
-        } catch (com.google.gson.JsonParseException e) {}
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-        if (object == null)
+    private static void journal(PaymentJournal journal, Object object) throws IOException
+    {
+        if (object instanceof Payment)
+            journal.append((Payment)object);
+        else if (object instanceof PaymentRefund)
+            journal.append((PaymentRefund)object);
+    }
+
+    /**
+     * Reports a completed api call to the metrics listener of the client.
+     */
+    private void recordCall(String httpMethod, String apiMethod, String httpBody,
+                            TransportResponse response, MollieException error, long started)
+    {
+        MetricsListener listener = _api.metricsListener();
+
+        if (listener != null)
         {
-            throw new MollieException("Unable to decode Mollie response: \""+result+"\"");
-        } else {
-            if (object.get("error") != null)
+            listener.callCompleted(MollieClient.resourceOf(apiMethod), httpMethod,
+                System.nanoTime() - started, utf8Length(httpBody),
+                (response != null ? response.bytesRead() : 0), error);
+        }
+    }
+
+    private static long utf8Length(String value)
+    {
+        long length = 0;
+
+        for (int i = 0; value != null && i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+
+            if (c < 0x80)
+                length += 1;
+            else if (c < 0x800)
+                length += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < value.length() &&
+                     Character.isLowSurrogate(value.charAt(i + 1)))
             {
-                MollieException exception = null;
-                JsonObject error = object.get("error").getAsJsonObject();
-                String type = error.get("type").getAsString();
-                String message = error.get("message").getAsString();
+                length += 4;
+                i++;
+            }
+            else
+                length += 3;
+        }
 
-                exception = new MollieException("Error executing API call (" + type +"): " +
-                    message + ".");
+        return length;
+    }
 
-                if (error.has("field")) {
-                    exception.setField(error.get("field").getAsString());
-                }
+    /**
+     * Decodes an api response in a single pass over its body, detecting
+     * errors reported by the api while binding the results. The body is
+     * decoded from utf-8 bytes straight into the json reader, through a
+     * pooled buffer sized from the Content-Length of the response.
+     *
+     * @param response the api response, closed by this method
+     * @param reader binds the response
+     * @return the bound result
+     * @throws MollieException if the response contains an error or could not
+     * be decoded, carrying the http status of the response
+     */
+    protected <R> R decodeResponse(TransportResponse response, ResponseReader<R> reader) throws MollieException
+    {
+        try {
+            return this.decode(response, reader);
+        } catch (MollieException e) {
+            e.setStatus(response.status());
+            throw e;
+        }
+    }
+
+    private <R> R decode(TransportResponse response, ResponseReader<R> reader) throws MollieException
+    {
+        Utf8Reader body = new Utf8Reader(response.body(),
+            (int)Math.min(Integer.MAX_VALUE, response.contentLength()));
+        ResponseJsonReader json = new ResponseJsonReader(body);
+
+        try {
+            JsonToken token = null;
 
-                throw exception;
+            try {
+                token = json.peek();
+            } catch (EOFException e) {
+                throw new MollieException("Unable to decode Mollie response: \"\"");
             }
-        }
 
-        return object;
+            if (token != JsonToken.BEGIN_OBJECT) {
+                throw new MollieException("Unable to decode Mollie response: expected an object but was " + token);
+            }
+
+            R result = reader.read(json);
+
+            this.journal(result);
+            return result;
+        } catch (ResponseJsonReader.ApiError e) {
+            throw e.exception;
+        } catch (IOException e) {
+            throw new MollieException("Unable to decode Mollie response: " + e.getMessage());
+        } catch (JsonParseException e) {
+            throw new MollieException("Unable to decode Mollie response: " + e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new MollieException("Unable to decode Mollie response: " + e.getMessage());
+        } finally {
+            body.release();
+
+            try {
+                response.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 }
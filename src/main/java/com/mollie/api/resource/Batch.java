@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.resource;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.mollie.api.MollieException;
+
+/**
+ * Runs an api call for every item of a list, with at most
+ * <code>maxInFlight</code> calls outstanding. A new call is started as soon
+ * as one completes, so the window stays full until the list is exhausted.
+ * Failed items do not stop the batch, results are collected in input order.
+ *
+ * @param <I> type of the items
+ * @param <R> type of the results
+ */
+class Batch<I, R> {
+    private final List<I> _items;
+    private final Function<I, CompletableFuture<R>> _call;
+    private final int _maxInFlight;
+
+    private final BatchResult<?>[] _results;
+    private final CompletableFuture<List<BatchResult<R>>> _done =
+        new CompletableFuture<List<BatchResult<R>>>();
+
+    private final AtomicInteger _remaining;
+    private final AtomicInteger _pendingStarts = new AtomicInteger();
+    private int _next;
+
+    /**
+     * @param items items to run the call for
+     * @param call starts the call for an item
+     * @param maxInFlight maximum number of calls outstanding
+     */
+    Batch(List<I> items, Function<I, CompletableFuture<R>> call, int maxInFlight)
+    {
+        if (maxInFlight < 1)
+            throw new IllegalArgumentException("Calls in flight must be at least 1");
+
+        _items = items;
+        _call = call;
+        _maxInFlight = maxInFlight;
+        _results = new BatchResult<?>[items.size()];
+        _remaining = new AtomicInteger(items.size());
+    }
+
+    /**
+     * Starts the first calls of the batch.
+     *
+     * @return future completing with the results once every call completed.
+     * Cancelling it stops starting new calls.
+     */
+    CompletableFuture<List<BatchResult<R>>> start()
+    {
+        if (_items.isEmpty())
+            _done.complete(Collections.<BatchResult<R>>emptyList());
+
+        for (int i = 0; i < _maxInFlight; i++)
+            startNext();
+
+        return _done;
+    }
+
+    /**
+     * Starts the next call. Calls that complete while one is being started,
+     * which is common when responses are served from memory, are started by
+     * the thread already in the loop rather than by recursion.
+     */
+    private void startNext()
+    {
+        if (_pendingStarts.getAndIncrement() != 0)
+            return;
+
+        do {
+            if (_next < _items.size() && !_done.isDone())
+            {
+                final int index = _next++;
+
+                call(_items.get(index)).whenComplete((result, failure) -> {
+                    complete(index, result, failure);
+                    startNext();
+                });
+            }
+        } while (_pendingStarts.decrementAndGet() != 0);
+    }
+
+    private CompletableFuture<R> call(I item)
+    {
+        try {
+            return _call.apply(item);
+        } catch (RuntimeException e) {
+            CompletableFuture<R> failed = new CompletableFuture<R>();
+
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void complete(int index, R result, Throwable failure)
+    {
+        Throwable cause = (failure instanceof CompletionException && failure.getCause() != null ?
+            failure.getCause() : failure);
+        MollieException error = null;
+
+        if (cause instanceof MollieException)
+            error = (MollieException)cause;
+        else if (cause != null)
+            error = MollieException.withCause("Unable to communicate with Mollie: " + cause, cause);
+
+        _results[index] = new BatchResult<R>(index, (error == null ? result : null), error);
+
+        if (_remaining.decrementAndGet() == 0)
+            _done.complete((List<BatchResult<R>>)(List<?>)Arrays.asList(_results));
+    }
+}
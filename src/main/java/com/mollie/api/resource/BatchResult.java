@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.resource;
+
+import com.mollie.api.MollieException;
+
+/**
+ * Outcome of a single item of a bulk operation: either the object returned
+ * by the api or the exception the item failed with.
+ *
+ * @param <T> type of the returned object
+ */
+public final class BatchResult<T> {
+    private final int _index;
+    private final T _value;
+    private final MollieException _error;
+
+    BatchResult(int index, T value, MollieException error)
+    {
+        _index = index;
+        _value = value;
+        _error = error;
+    }
+
+    /**
+     * @return position of the item in the list passed to the bulk operation.
+     */
+    public int index() { return _index; }
+
+    /**
+     * @return whether the item succeeded.
+     */
+    public boolean isSuccess() { return _error == null; }
+
+    /**
+     * @return the returned object, or null if the item failed.
+     */
+    public T value() { return _value; }
+
+    /**
+     * @return the exception the item failed with, or null if it succeeded.
+     */
+    public MollieException error() { return _error; }
+
+    /**
+     * @return the returned object
+     * @throws MollieException the exception the item failed with
+     */
+    public T get() throws MollieException
+    {
+        if (_error != null)
+            throw _error;
+
+        return _value;
+    }
+}
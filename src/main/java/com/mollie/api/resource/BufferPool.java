@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.resource;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Small pool of byte buffers of a fixed size, shared by the resources of
+ * all clients. Acquiring a buffer never blocks: when the pool is empty a
+ * new buffer is allocated, and buffers released to a full pool are left to
+ * the garbage collector.
+ */
+class BufferPool {
+    /**
+     * Smallest buffer handed out, large enough for any utf-8 sequence.
+     */
+    static final int MIN_SIZE = 64;
+
+    private final int _bufferSize;
+    private final AtomicReferenceArray<byte[]> _slots;
+    private final int _mask;
+
+    /**
+     * @param bufferSize size in bytes of the pooled buffers
+     * @param slots maximum number of pooled buffers, rounded up to a power of
+     * two
+     */
+    BufferPool(int bufferSize, int slots)
+    {
+        int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+
+        _bufferSize = bufferSize;
+        _slots = new AtomicReferenceArray<byte[]>(size);
+        _mask = size - 1;
+    }
+
+    int bufferSize() { return _bufferSize; }
+
+    /**
+     * Takes a buffer from the pool. When the pool is empty, a buffer of at
+     * most <code>sizeHint</code> bytes is allocated instead, so small
+     * responses do not allocate full size buffers.
+     *
+     * @param sizeHint expected number of bytes to hold, or -1 if unknown
+     * @return a buffer of at least {@link #MIN_SIZE} bytes
+     */
+    byte[] acquire(int sizeHint)
+    {
+        int start = this.start();
+
+        for (int i = 0; i <= _mask; i++)
+        {
+            int slot = (start + i) & _mask;
+            byte[] buffer = _slots.get(slot);
+
+            if (buffer != null && _slots.compareAndSet(slot, buffer, null))
+                return buffer;
+        }
+
+        return new byte[(sizeHint >= 0 && sizeHint < _bufferSize ? Math.max(MIN_SIZE, sizeHint) : _bufferSize)];
+    }
+
+    /**
+     * Returns a buffer to the pool. Buffers not of the pooled size are
+     * dropped.
+     *
+     * @param buffer the buffer, which must no longer be used
+     */
+    void release(byte[] buffer)
+    {
+        int start = this.start();
+
+        if (buffer.length != _bufferSize)
+            return;
+
+        for (int i = 0; i <= _mask; i++)
+        {
+            int slot = (start + i) & _mask;
+
+            if (_slots.get(slot) == null && _slots.compareAndSet(slot, null, buffer))
+                return;
+        }
+    }
+
+    /**
+     * Threads start probing at different slots to avoid contending for the
+     * same one.
+     */
+    private int start() {
+        return (int)Thread.currentThread().getId() & _mask;
+    }
+}
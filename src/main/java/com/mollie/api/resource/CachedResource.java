@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.resource;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.mollie.api.MollieClient;
+import com.mollie.api.MollieException;
+
+/**
+ * Resource whose listings rarely change and can optionally be cached. When a
+ * cache ttl is set, listings are served from memory; once older than the ttl
+ * they are refreshed in the background while the previous listing is still
+ * served. Listings are cached per api key, and every call gets objects of its
+ * own.
+ */
+abstract public class CachedResource<T> extends BaseResource<T> {
+    private volatile ListingCache<T> _cache;
+    private volatile long _cacheTtl;
+
+    public CachedResource(MollieClient api) {
+        super(api);
+    }
+
+    public long cacheTtl() { return _cacheTtl; }
+
+    /**
+     * Sets the time after which cached listings are refreshed. Setting a ttl
+     * discards all cached listings.
+     *
+     * @param ttl ttl in milliseconds, or 0 to disable caching.
+     */
+    public void setCacheTtl(long ttl)
+    {
+        _cacheTtl = ttl;
+        _cache = (ttl > 0 ? new ListingCache<T>(returnedClass(), ttl) : null);
+    }
+
+    /**
+     * Discards all cached listings, the next call fetches them from the api.
+     */
+    public void invalidateCache()
+    {
+        ListingCache<T> cache = _cache;
+
+        if (cache != null)
+            cache.invalidate();
+    }
+
+    @Override
+    protected List<T> rest_list(final String apiPath) throws MollieException
+    {
+        ListingCache<T> cache = _cache;
+
+        if (cache == null)
+            return super.rest_list(apiPath);
+
+        return cache.get(cacheKey(apiPath),
+            () -> super.rest_list(apiPath),
+            () -> super.rest_listAsync(apiPath));
+    }
+
+    @Override
+    protected CompletableFuture<List<T>> rest_listAsync(final String apiPath)
+    {
+        ListingCache<T> cache = _cache;
+
+        if (cache == null)
+            return super.rest_listAsync(apiPath);
+
+        return cache.getAsync(cacheKey(apiPath), () -> super.rest_listAsync(apiPath));
+    }
+
+    /**
+     * @param apiPath api path of a listing
+     * @return key of the listing in the cache, listings fetched with
+     * different api keys are cached apart.
+     */
+    private String cacheKey(String apiPath) {
+        return _api.apiKey() + " " + apiPath;
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.resource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import com.mollie.api.MollieException;
+
+/**
+ * Cache of listing pages keyed by api key and path. Entries older than the
+ * ttl are still served while a single background refresh is running, and
+ * replaced atomically once the refresh completes, so readers never wait on a
+ * refresh. Only a read of a missing entry fetches synchronously, and
+ * concurrent reads of the same missing entry share a single fetch. Every
+ * read returns a list of copies, so callers may change what they get.
+ */
+class ListingCache<T> {
+    /**
+     * Loads a page synchronously.
+     */
+    interface Loader<V> {
+        V load() throws MollieException;
+    }
+
+    private static class Entry<T> {
+        final List<T> value;
+        final long loadedAt;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(List<T> value) {
+            this.value = value;
+            this.loadedAt = System.nanoTime();
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry<T>> _entries = new ConcurrentHashMap<String, Entry<T>>();
+
+    /**
+     * Loads of missing entries in flight by key, shared by concurrent reads
+     * of the same entry.
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Entry<T>>> _loads =
+        new ConcurrentHashMap<String, CompletableFuture<Entry<T>>>();
+
+    private final ObjectCopier _copier;
+    private final long _ttl;
+
+    /**
+     * @param type class of the cached objects
+     * @param ttl time in milliseconds after which an entry is refreshed
+     */
+    ListingCache(Class<T> type, long ttl) {
+        _copier = ObjectCopier.forClass(type);
+        _ttl = TimeUnit.MILLISECONDS.toNanos(ttl);
+    }
+
+    /**
+     * Returns the cached page for a key, loading it if it is not cached.
+     *
+     * @param key api key and path of the page
+     * @param loader loads the page synchronously if it is not cached
+     * @param refresher loads the page in the background if it is stale
+     * @return copy of the page
+     * @throws MollieException if the page is not cached and cannot be loaded
+     */
+    List<T> get(String key, Loader<List<T>> loader, Supplier<CompletableFuture<List<T>>> refresher)
+            throws MollieException
+    {
+        Entry<T> entry = _entries.get(key);
+
+        if (entry != null) {
+            refreshIfStale(key, entry, refresher);
+            return copy(entry.value);
+        }
+
+        CompletableFuture<Entry<T>> load = new CompletableFuture<Entry<T>>();
+        CompletableFuture<Entry<T>> inflight = _loads.putIfAbsent(key, load);
+
+        if (inflight != null)
+            return copy(await(inflight).value);
+
+        try {
+            // another read may have loaded the entry in the meantime
+            entry = _entries.get(key);
+            if (entry == null) {
+                entry = new Entry<T>(loader.load());
+                _entries.put(key, entry);
+            }
+            load.complete(entry);
+            return copy(entry.value);
+        } catch (Throwable e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            _loads.remove(key, load);
+        }
+    }
+
+    /**
+     * Returns the cached page for a key without blocking, loading it in the
+     * background if it is not cached.
+     *
+     * @param key api key and path of the page
+     * @param refresher loads the page
+     * @return future completing with a copy of the page
+     */
+    CompletableFuture<List<T>> getAsync(final String key, Supplier<CompletableFuture<List<T>>> refresher)
+    {
+        Entry<T> entry = _entries.get(key);
+
+        if (entry != null) {
+            refreshIfStale(key, entry, refresher);
+            return CompletableFuture.completedFuture(copy(entry.value));
+        }
+
+        final CompletableFuture<Entry<T>> load = new CompletableFuture<Entry<T>>();
+        CompletableFuture<Entry<T>> inflight = _loads.putIfAbsent(key, load);
+
+        if (inflight != null)
+            return inflight.thenApply(loaded -> copy(loaded.value));
+
+        refresher.get().whenComplete((value, failure) -> {
+            if (failure != null) {
+                _loads.remove(key, load);
+                load.completeExceptionally(failure instanceof CompletionException ? failure.getCause() : failure);
+            } else {
+                Entry<T> loaded = new Entry<T>(value);
+                _entries.put(key, loaded);
+                _loads.remove(key, load);
+                load.complete(loaded);
+            }
+        });
+
+        return load.thenApply(loaded -> copy(loaded.value));
+    }
+
+    /**
+     * Removes all cached pages, the next read of a page fetches it again.
+     */
+    void invalidate() {
+        _entries.clear();
+    }
+
+    private List<T> copy(List<T> page)
+    {
+        List<T> copies = new ArrayList<T>(page.size());
+
+        for (T item : page) {
+            @SuppressWarnings("unchecked")
+            T copy = (T)_copier.copy(item);
+            copies.add(copy);
+        }
+
+        return copies;
+    }
+
+    private void refreshIfStale(final String key, final Entry<T> entry,
+            Supplier<CompletableFuture<List<T>>> refresher)
+    {
+        if (System.nanoTime() - entry.loadedAt < _ttl || !entry.refreshing.compareAndSet(false, true))
+            return;
+
+        refresher.get().whenComplete((value, failure) -> {
+            if (failure == null) {
+                _entries.replace(key, entry, new Entry<T>(value));
+            } else {
+                entry.refreshing.set(false);
+            }
+        });
+    }
+
+    /**
+     * Waits for a load started by another thread.
+     *
+     * @param inflight the load in flight
+     * @return the loaded entry
+     * @throws MollieException the exception of the load
+     */
+    private static <T> Entry<T> await(CompletableFuture<Entry<T>> inflight) throws MollieException
+    {
+        try {
+            return inflight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MollieException("Interrupted while waiting for Mollie");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof MollieException)
+                throw (MollieException)cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+
+            throw new MollieException("Unable to communicate with Mollie");
+        }
+    }
+}
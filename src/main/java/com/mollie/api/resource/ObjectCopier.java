@@ -0,0 +1,232 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.resource;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies the non-final instance fields declared by a class from one object
+ * into another. These are the fields the json codec binds, public ones for
+ * payments and private ones for methods and issuers. Maps, lists and api
+ * objects held in the fields, such as the links and metadata of a payment,
+ * are copied as well, so a copy shares nothing a caller can change with the
+ * original. The fields are looked up once per class and copied through method
+ * handles, so copying does not use reflection.
+ */
+final class ObjectCopier {
+    private static final MethodType COPY_TYPE =
+        MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final ClassValue<ObjectCopier> COPIERS = new ClassValue<ObjectCopier>() {
+        @Override
+        protected ObjectCopier computeValue(Class<?> type) {
+            return new ObjectCopier(type);
+        }
+    };
+
+    private static final MethodType CONSTRUCTOR_TYPE =
+        MethodType.methodType(Object.class);
+
+    /**
+     * Package of the api objects, objects of other classes held in a field
+     * are not copied.
+     */
+    private static final String OBJECTS_PACKAGE = "com.mollie.api.objects.";
+
+    private static final MethodHandle COPY_VALUE;
+
+    static {
+        try {
+            COPY_VALUE = MethodHandles.lookup().findStatic(ObjectCopier.class, "copyValue",
+                MethodType.methodType(Object.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final MethodHandle _constructor;
+    private final MethodHandle[] _fields;
+
+    private ObjectCopier(Class<?> type)
+    {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        List<MethodHandle> fields = new ArrayList<MethodHandle>();
+        MethodHandle constructor = null;
+
+        try {
+            constructor = lookup.findConstructor(type, MethodType.methodType(void.class))
+                .asType(CONSTRUCTOR_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            // objects of the class can only be copied into existing objects
+        }
+
+        try {
+            for (Field field : type.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+
+                if (!Modifier.isFinal(modifiers) && !Modifier.isStatic(modifiers) &&
+                    !field.isSynthetic())
+                {
+                    if (!Modifier.isPublic(modifiers))
+                        field.setAccessible(true);
+
+                    MethodHandle getter = lookup.unreflectGetter(field);
+                    Class<?> fieldType = field.getType();
+
+                    if (!isImmutable(fieldType)) {
+                        getter = MethodHandles.filterReturnValue(getter,
+                            COPY_VALUE.asType(MethodType.methodType(fieldType, fieldType)));
+                    }
+
+                    // (dst, src) -> dst.field = copy of src.field
+                    MethodHandle copy = MethodHandles.filterArguments(
+                        lookup.unreflectSetter(field), 1, getter);
+
+                    fields.add(copy.asType(COPY_TYPE));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to access fields of " + type.getName(), e);
+        }
+
+        _constructor = constructor;
+        _fields = fields.toArray(new MethodHandle[fields.size()]);
+    }
+
+    /**
+     * @param type the class whose fields are copied
+     * @return the copier of the class, created on first use.
+     */
+    static ObjectCopier forClass(Class<?> type)
+    {
+        return COPIERS.get(type);
+    }
+
+    /**
+     * @param src object to copy the fields from
+     * @param dst object to copy the fields into
+     */
+    void copy(Object src, Object dst)
+    {
+        try {
+            for (MethodHandle field : _fields)
+                field.invokeExact(dst, src);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param src object to copy, may be null
+     * @return new object with the fields of src, or null if src is null.
+     * @throws IllegalStateException if the class has no public constructor
+     * without arguments.
+     */
+    Object copy(Object src)
+    {
+        if (src == null)
+            return null;
+
+        if (_constructor == null)
+            throw new IllegalStateException("Unable to create a copy of " + src.getClass().getName());
+
+        Object dst;
+
+        try {
+            dst = _constructor.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+
+        this.copy(src, dst);
+        return dst;
+    }
+
+    /**
+     * @param value value of a field, may be null
+     * @return copy of a map, list or api object, with the values it holds
+     * copied the same way, or the value itself.
+     */
+    private static Object copyValue(Object value)
+    {
+        if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<Object, Object>();
+
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet())
+                copy.put(entry.getKey(), copyValue(entry.getValue()));
+
+            return copy;
+        }
+
+        if (value instanceof List) {
+            List<Object> copy = new ArrayList<Object>(((List<?>)value).size());
+
+            for (Object item : (List<?>)value)
+                copy.add(copyValue(item));
+
+            return copy;
+        }
+
+        if (value != null && value.getClass().getName().startsWith(OBJECTS_PACKAGE)) {
+            ObjectCopier copier = forClass(value.getClass());
+
+            if (copier._constructor != null)
+                return copier.copy(value);
+        }
+
+        return value;
+    }
+
+    /**
+     * @param type declared type of a field
+     * @return whether values of the type can be shared between copies.
+     */
+    private static boolean isImmutable(Class<?> type)
+    {
+        return type.isPrimitive() || type.isEnum() || type == String.class ||
+            type == Boolean.class || type == Character.class ||
+            type == BigDecimal.class || type == BigInteger.class ||
+            (Number.class.isAssignableFrom(type) && type.getName().startsWith("java.lang."));
+    }
+}
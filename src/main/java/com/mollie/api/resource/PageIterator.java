@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.resource;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntFunction;
+
+import com.mollie.api.MollieException;
+import com.mollie.api.UncheckedMollieException;
+
+/**
+ * Iterator walking a listing page by page. While a page is consumed, the
+ * next page is already fetched in the background, so at most two pages are
+ * held in memory at any time.
+ */
+class PageIterator<T> implements Iterator<T> {
+    private final IntFunction<CompletableFuture<List<T>>> _fetcher;
+    private final int _pageSize;
+
+    private int _offset;
+    private Iterator<T> _page;
+    private CompletableFuture<List<T>> _next;
+
+    /**
+     * @param fetcher fetches the page starting at the given offset
+     * @param pageSize number of objects per page, at most the api maximum
+     */
+    PageIterator(IntFunction<CompletableFuture<List<T>>> fetcher, int pageSize)
+    {
+        if (pageSize < 1 || pageSize > BaseResource.MAX_PAGE_SIZE)
+            throw new IllegalArgumentException("Page size must be between 1 and " + BaseResource.MAX_PAGE_SIZE);
+
+        _fetcher = fetcher;
+        _pageSize = pageSize;
+    }
+
+    public boolean hasNext()
+    {
+        if (_page == null) {
+            _next = _fetcher.apply(_offset);
+        }
+
+        while ((_page == null || !_page.hasNext()) && _next != null)
+        {
+            List<T> page = await(_next);
+
+            _offset += page.size();
+            _next = (page.size() >= _pageSize ? _fetcher.apply(_offset) : null);
+            _page = page.iterator();
+        }
+
+        return _page.hasNext();
+    }
+
+    public T next()
+    {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        return _page.next();
+    }
+
+    /**
+     * Stops the background fetch of the next page, if any.
+     */
+    void cancel()
+    {
+        if (_next != null) {
+            _next.cancel(false);
+            _next = null;
+        }
+    }
+
+    private List<T> await(CompletableFuture<List<T>> future)
+    {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedMollieException(new MollieException("Interrupted while fetching a page"));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MollieException)
+                throw new UncheckedMollieException((MollieException)e.getCause());
+
+            throw new UncheckedMollieException(new MollieException("Unable to fetch a page: " + e.getCause()));
+        }
+    }
+}
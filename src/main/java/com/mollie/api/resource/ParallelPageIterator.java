@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.resource;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+import com.mollie.api.MollieException;
+import com.mollie.api.UncheckedMollieException;
+
+/**
+ * Iterator walking a listing by fetching several pages concurrently. Pages
+ * are requested ahead of the consumer, with at most <code>parallelism</code>
+ * requests in flight and at most <code>maxBufferedPages</code> pages either
+ * in flight or waiting to be consumed. Objects are returned in listing order.
+ *
+ * Because the end of the listing is only known once a short page has been
+ * received, up to <code>parallelism - 1</code> empty pages past the end may
+ * be requested.
+ */
+class ParallelPageIterator<T> implements Iterator<T> {
+    private final IntFunction<CompletableFuture<List<T>>> _fetcher;
+    private final int _pageSize;
+    private final int _parallelism;
+    private final int _maxBufferedPages;
+
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final ArrayDeque<CompletableFuture<List<T>>> _window = new ArrayDeque<CompletableFuture<List<T>>>();
+    private int _inFlight;
+    private int _nextOffset;
+    private boolean _started;
+    private boolean _exhausted;
+
+    private Iterator<T> _page = Collections.<T>emptyList().iterator();
+
+    /**
+     * @param fetcher fetches the page starting at the given offset
+     * @param pageSize number of objects per page, at most the api maximum
+     * @param parallelism maximum number of pages fetched concurrently
+     * @param maxBufferedPages maximum number of pages in flight or waiting to
+     * be consumed
+     */
+    ParallelPageIterator(IntFunction<CompletableFuture<List<T>>> fetcher,
+            int pageSize, int parallelism, int maxBufferedPages)
+    {
+        if (pageSize < 1 || parallelism < 1 || maxBufferedPages < 1)
+            throw new IllegalArgumentException("Page size, parallelism and buffered pages must be at least 1");
+        if (pageSize > BaseResource.MAX_PAGE_SIZE)
+            throw new IllegalArgumentException("Page size must be at most " + BaseResource.MAX_PAGE_SIZE);
+
+        _fetcher = fetcher;
+        _pageSize = pageSize;
+        _parallelism = parallelism;
+        _maxBufferedPages = maxBufferedPages;
+    }
+
+    public boolean hasNext()
+    {
+        while (!_page.hasNext())
+        {
+            CompletableFuture<List<T>> head = null;
+
+            _lock.lock();
+            try {
+                if (!_started) {
+                    _started = true;
+                    fill();
+                }
+
+                head = _window.peek();
+            } finally {
+                _lock.unlock();
+            }
+
+            if (head == null)
+                return false;
+
+            List<T> page = await(head);
+
+            _lock.lock();
+            try {
+                _window.poll();
+                fill();
+            } finally {
+                _lock.unlock();
+            }
+
+            _page = page.iterator();
+        }
+
+        return true;
+    }
+
+    public T next()
+    {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        return _page.next();
+    }
+
+    /**
+     * Stops fetching and cancels all outstanding page requests.
+     */
+    void cancel()
+    {
+        _lock.lock();
+        try {
+            _exhausted = true;
+
+            for (CompletableFuture<List<T>> future : _window)
+                future.cancel(false);
+
+            _window.clear();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Requests pages until either limit is reached. Must be called while
+     * holding the lock.
+     */
+    private void fill()
+    {
+        while (!_exhausted && _inFlight < _parallelism && _window.size() < _maxBufferedPages)
+        {
+            int offset = _nextOffset;
+            CompletableFuture<List<T>> future = null;
+
+            _nextOffset += _pageSize;
+            _inFlight++;
+
+            future = _fetcher.apply(offset);
+            _window.add(future);
+
+            future.whenComplete((page, failure) -> {
+                _lock.lock();
+                try {
+                    _inFlight--;
+
+                    if (failure != null || page.size() < _pageSize)
+                        _exhausted = true;
+
+                    fill();
+                } finally {
+                    _lock.unlock();
+                }
+            });
+        }
+    }
+
+    private List<T> await(CompletableFuture<List<T>> future)
+    {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new UncheckedMollieException(new MollieException("Interrupted while fetching a page"));
+        } catch (ExecutionException e) {
+            cancel();
+
+            if (e.getCause() instanceof MollieException)
+                throw new UncheckedMollieException((MollieException)e.getCause());
+
+            throw new UncheckedMollieException(new MollieException("Unable to fetch a page: " + e.getCause()));
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.resource;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.mollie.api.objects.Payment;
+
+/**
+ * Bounded read-through cache for {@link Payments#get(String)}. The time a
+ * payment is cached depends on its status: payments in a final status rarely
+ * change and are kept much longer than open or pending payments. When the
+ * cache is full, the least recently used payment is evicted.
+ *
+ * @see Payments#setCache(PaymentCache)
+ */
+public class PaymentCache {
+    /**
+     * Default maximum number of cached payments.
+     */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    /**
+     * Default time in milliseconds a payment in a final status is cached.
+     */
+    public static final long DEFAULT_FINAL_TTL = 3600000;
+
+    /**
+     * Default time in milliseconds an open or pending payment is cached.
+     */
+    public static final long DEFAULT_ACTIVE_TTL = 5000;
+
+    private static class CachedPayment {
+        final Payment payment;
+        final long expiresAt;
+
+        CachedPayment(Payment payment, long expiresAt) {
+            this.payment = payment;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int _maxSize;
+    private final Map<String, Long> _ttls = new HashMap<String, Long>();
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final LinkedHashMap<String, CachedPayment> _entries;
+
+    private long _defaultTtl = DEFAULT_ACTIVE_TTL;
+
+    public PaymentCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize maximum number of cached payments
+     */
+    public PaymentCache(int maxSize)
+    {
+        _maxSize = maxSize;
+        _entries = new LinkedHashMap<String, CachedPayment>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPayment> eldest) {
+                return size() > _maxSize;
+            }
+        };
+
+        setTtl(Payment.STATUS_OPEN, DEFAULT_ACTIVE_TTL);
+        setTtl(Payment.STATUS_PENDING, DEFAULT_ACTIVE_TTL);
+        setTtl(Payment.STATUS_PAID, DEFAULT_FINAL_TTL);
+        setTtl(Payment.STATUS_PAIDOUT, DEFAULT_FINAL_TTL);
+        setTtl(Payment.STATUS_REFUNDED, DEFAULT_FINAL_TTL);
+        setTtl(Payment.STATUS_CHARGED_BACK, DEFAULT_FINAL_TTL);
+        setTtl(Payment.STATUS_EXPIRED, DEFAULT_FINAL_TTL);
+        setTtl(Payment.STATUS_CANCELLED, DEFAULT_FINAL_TTL);
+    }
+
+    public int maxSize() { return _maxSize; }
+
+    /**
+     * Sets the time payments with a certain status are cached.
+     *
+     * @param status one of the Payment.STATUS_* values
+     * @param ttl ttl in milliseconds, 0 disables caching for the status.
+     */
+    public void setTtl(String status, long ttl)
+    {
+        _lock.lock();
+        try {
+            _ttls.put(status, ttl);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the time payments with a status without a specific ttl are cached.
+     *
+     * @param ttl ttl in milliseconds, 0 disables caching for those payments.
+     */
+    public void setDefaultTtl(long ttl)
+    {
+        _lock.lock();
+        try {
+            _defaultTtl = ttl;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @param paymentId id of the payment
+     * @return the cached payment, or null if it is not cached or has expired.
+     */
+    public Payment get(String paymentId)
+    {
+        _lock.lock();
+        try {
+            CachedPayment entry = _entries.get(paymentId);
+
+            if (entry == null)
+                return null;
+
+            if (entry.expiresAt - System.nanoTime() <= 0) {
+                _entries.remove(paymentId);
+                return null;
+            }
+
+            return entry.payment;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Caches a payment for the ttl of its status.
+     *
+     * @param payment the payment to cache
+     */
+    public void put(Payment payment)
+    {
+        if (payment == null || payment.id == null)
+            return;
+
+        _lock.lock();
+        try {
+            Long ttl = _ttls.get(payment.status);
+            long millis = (ttl != null ? ttl : _defaultTtl);
+
+            if (millis > 0) {
+                long expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+                _entries.put(payment.id, new CachedPayment(payment, expiresAt));
+            } else {
+                _entries.remove(payment.id);
+            }
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a payment from the cache.
+     *
+     * @param paymentId id of the payment
+     */
+    public void evict(String paymentId)
+    {
+        _lock.lock();
+        try {
+            _entries.remove(paymentId);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all payments from the cache.
+     */
+    public void clear()
+    {
+        _lock.lock();
+        try {
+            _entries.clear();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of cached payments, including expired payments that
+     * have not been removed yet.
+     */
+    public int size()
+    {
+        _lock.lock();
+        try {
+            return _entries.size();
+        } finally {
+            _lock.unlock();
+        }
+    }
+}
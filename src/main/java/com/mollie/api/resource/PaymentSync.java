@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.resource;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.mollie.api.MollieException;
+import com.mollie.api.objects.Payment;
+
+/**
+ * Outcome of an incremental payment sync: the payments created or changed
+ * since the previous sync, the open or pending payments that could not be
+ * checked, and the cursor to pass to the next one.
+ *
+ * @see Payments#syncSince(SyncCursor)
+ */
+public final class PaymentSync {
+    private final List<Payment> _changes;
+    private final Map<String, MollieException> _failures;
+    private final SyncCursor _cursor;
+
+    PaymentSync(List<Payment> changes, Map<String, MollieException> failures, SyncCursor cursor)
+    {
+        _changes = Collections.unmodifiableList(changes);
+        _failures = Collections.unmodifiableMap(failures);
+        _cursor = cursor;
+    }
+
+    /**
+     * @return the payments created or changed, newest first.
+     */
+    public List<Payment> changes() { return _changes; }
+
+    /**
+     * @return the error by id of the open or pending payments of the
+     * previous sync that could not be fetched.
+     */
+    public Map<String, MollieException> failures() { return _failures; }
+
+    /**
+     * @return the cursor to start the next sync from.
+     */
+    public SyncCursor cursor() { return _cursor; }
+}
@@ -29,22 +29,168 @@
  */
 package com.mollie.api.resource;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 import com.mollie.api.MollieClient;
 import com.mollie.api.MollieException;
+import com.mollie.api.UncheckedMollieException;
 import com.mollie.api.objects.Payment;
 import com.mollie.api.objects.PaymentRefund;
+import com.mollie.api.objects.PaymentRequest;
 
 public class Payments extends BaseResource<Payment> {
+    /**
+     * Default maximum number of creations in flight for
+     * {@link #createAll(List)}.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+
+    private volatile PaymentCache _cache;
+
     public Payments(MollieClient api) {
         super(api);
     }
 
+    public PaymentCache cache() { return _cache; }
+
+    /**
+     * Sets a read-through cache for {@link #get(String)}. Cached payments are
+     * evicted when they are refunded through this resource.
+     *
+     * @param cache the cache to use, or null to disable caching.
+     */
+    public void setCache(PaymentCache cache) { _cache = cache; }
+
+    /**
+     * Removes a payment from the cache, if any, so the next call to
+     * {@link #get(String)} fetches it from the api.
+     *
+     * @param paymentId id of the payment
+     */
+    public void evict(String paymentId)
+    {
+        PaymentCache cache = _cache;
+
+        if (cache != null)
+            cache.evict(paymentId);
+    }
+
+    /**
+     * Retrieve a single payment, from the cache if one is set and the payment
+     * is cached.
+     *
+     * @param paymentId Id of the payment to retrieve.
+     * @return the payment
+     * @throws MollieException if the client is unable to get the payment from
+     * the server.
+     */
+    @Override
+    public Payment get(String paymentId) throws MollieException
+    {
+        PaymentCache cache = _cache;
+        Payment payment = null;
+
+        if (cache == null)
+            return super.get(paymentId);
+
+        if ((payment = cache.get(paymentId)) != null)
+            return this.copy(payment);
+
+        payment = super.get(paymentId);
+        cache.put(this.copy(payment));
+
+        return payment;
+    }
+
+    /**
+     * Retrieve a single payment without blocking the calling thread, from the
+     * cache if one is set and the payment is cached.
+     *
+     * @param paymentId Id of the payment to retrieve.
+     * @return future completing with the payment
+     */
+    @Override
+    public CompletableFuture<Payment> getAsync(String paymentId)
+    {
+        final PaymentCache cache = _cache;
+        Payment payment = null;
+
+        if (cache == null)
+            return super.getAsync(paymentId);
+
+        if ((payment = cache.get(paymentId)) != null)
+            return CompletableFuture.completedFuture(this.copy(payment));
+
+        return super.getAsync(paymentId).thenApply(result -> {
+            cache.put(this.copy(result));
+            return result;
+        });
+    }
+
+    /**
+     * Export all payments, fetching up to <code>parallelism</code> pages
+     * concurrently. Payments are returned in listing order.
+     *
+     * @param parallelism maximum number of pages fetched concurrently
+     * @return sequential stream over all payments
+     *
+     * @see #export(int pageSize, int parallelism, int maxBufferedPages, Map options)
+     */
+    public Stream<Payment> export(int parallelism) {
+        return export(DEFAULT_PAGE_SIZE, parallelism, 2 * parallelism, null);
+    }
+
+    /**
+     * Export all payments, fetching pages concurrently and reassembling them
+     * in listing order. At most <code>parallelism</code> pages are fetched at
+     * the same time, and at most <code>maxBufferedPages</code> pages are in
+     * flight or waiting to be consumed, which bounds memory use. Concurrency
+     * is further limited by the connection pool of the transport.
+     *
+     * A {@link com.mollie.api.UncheckedMollieException} is thrown by the
+     * stream when a page cannot be fetched. Closing the stream cancels all
+     * outstanding page requests.
+     *
+     * @param pageSize number of payments to fetch per page, larger values than
+     * {@link #MAX_PAGE_SIZE} are reduced to it
+     * @param parallelism maximum number of pages fetched concurrently
+     * @param maxBufferedPages maximum number of pages in flight or waiting to
+     * be consumed
+     * @param options additional options to include when fetching payments.
+     * @return sequential stream over all payments
+     */
+    public Stream<Payment> export(int pageSize, int parallelism, int maxBufferedPages,
+            Map<String,String> options)
+    {
+        int size = pageSize(pageSize);
+        ParallelPageIterator<Payment> iterator = new ParallelPageIterator<Payment>(
+            this.pageFetcher(size, options), size, parallelism, maxBufferedPages);
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(iterator::cancel);
+    }
+
     public Payment create(BigDecimal amount, String description,
             String redirectUrl, Map<String, Object> meta) throws MollieException
     {
@@ -53,6 +199,200 @@ public class Payments extends BaseResource<Payment> {
 
     public Payment create(BigDecimal amount, String method, String description,
             String redirectUrl, Map<String, Object> meta) throws MollieException
+    {
+        return this.create(paymentData(amount, method, description, redirectUrl, meta));
+    }
+
+    public CompletableFuture<Payment> createAsync(BigDecimal amount, String description,
+            String redirectUrl, Map<String, Object> meta)
+    {
+        return createAsync(amount, null, description, redirectUrl, meta);
+    }
+
+    public CompletableFuture<Payment> createAsync(BigDecimal amount, String method,
+            String description, String redirectUrl, Map<String, Object> meta)
+    {
+        return this.createAsync(paymentData(amount, method, description, redirectUrl, meta));
+    }
+
+    /**
+     * Create a payment for every request, issuing up to
+     * {@link #DEFAULT_MAX_IN_FLIGHT} creations concurrently.
+     *
+     * @param requests details of the payments to create
+     * @return the result of every request, in the order of the requests
+     * @throws MollieException if interrupted while waiting for the results
+     *
+     * @see #createAll(List requests, int maxInFlight)
+     */
+    public List<BatchResult<Payment>> createAll(List<PaymentRequest> requests) throws MollieException {
+        return createAll(requests, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Create a payment for every request, issuing up to
+     * <code>maxInFlight</code> creations concurrently. A failed creation does
+     * not stop the others, its result holds the {@link MollieException}
+     * instead. Concurrency is further limited by the connection pool of the
+     * transport.
+     *
+     * @param requests details of the payments to create
+     * @param maxInFlight maximum number of creations in flight
+     * @return the result of every request, in the order of the requests
+     * @throws MollieException if interrupted while waiting for the results
+     */
+    public List<BatchResult<Payment>> createAll(List<PaymentRequest> requests, int maxInFlight)
+        throws MollieException
+    {
+        return this.await(createAllAsync(requests, maxInFlight), "creating");
+    }
+
+    /**
+     * Create a payment for every request without blocking the calling
+     * thread, issuing up to <code>maxInFlight</code> creations concurrently.
+     *
+     * @param requests details of the payments to create
+     * @param maxInFlight maximum number of creations in flight
+     * @return future completing with the result of every request, in the
+     * order of the requests. Cancelling it stops issuing new creations.
+     *
+     * @see #createAll(List requests, int maxInFlight)
+     */
+    public CompletableFuture<List<BatchResult<Payment>>> createAllAsync(List<PaymentRequest> requests,
+            int maxInFlight)
+    {
+        return new Batch<PaymentRequest, Payment>(requests, request -> this.createAsync(
+                paymentData(request.amount, request.method, request.description,
+                    request.redirectUrl, request.metadata)),
+            maxInFlight).start();
+    }
+
+    /**
+     * Fetch the payments created or changed since a previous sync.
+     *
+     * @param cursor cursor returned by the previous sync, or null to fetch
+     * all payments
+     * @return the payments created or changed, the payments that could not
+     * be fetched, and the cursor for the next sync
+     * @throws MollieException if a page could not be fetched. The previous
+     * cursor remains valid.
+     *
+     * @see #syncSince(SyncCursor cursor, Consumer changes, BiConsumer failures)
+     */
+    public PaymentSync syncSince(SyncCursor cursor) throws MollieException
+    {
+        ArrayList<Payment> changes = new ArrayList<Payment>();
+        LinkedHashMap<String, MollieException> failures = new LinkedHashMap<String, MollieException>();
+        SyncCursor next = this.syncSince(cursor, changes::add, failures::put);
+
+        return new PaymentSync(changes, failures, next);
+    }
+
+    /**
+     * Fetch the payments created or changed since a previous sync, passing
+     * them to a consumer as they are found rather than collecting them.
+     *
+     * Payments are listed newest first until a payment is reached that was
+     * seen before with a final status. Payments the cursor holds as open or
+     * pending are checked again: those not reached by the listing are
+     * fetched one by one. A payment is passed on if it was not seen before
+     * or if its status differs from the status in the cursor. Changes of
+     * payments that already had a final status, such as a refund of a paid
+     * payment, are not detected. Payments whose creation time is not known
+     * never count as seen, so they do not stop the listing.
+     *
+     * A payment that is fetched one by one but cannot be fetched is passed
+     * to the failures consumer instead. When Mollie reports that it does not
+     * exist, with a 404 or 410 response, it is not checked again by later
+     * syncs; after any other failure, such as an unavailable api or a rate
+     * limit, it is.
+     *
+     * @param cursor cursor returned by the previous sync, or null to fetch
+     * all payments
+     * @param changes receives the payments created or changed
+     * @param failures receives the id and error of the payments that could
+     * not be fetched
+     * @return the cursor for the next sync
+     * @throws MollieException if a page could not be fetched. The previous
+     * cursor remains valid.
+     */
+    public SyncCursor syncSince(SyncCursor cursor, Consumer<Payment> changes,
+            BiConsumer<String, MollieException> failures) throws MollieException
+    {
+        SyncCursor since = (cursor != null ? cursor : SyncCursor.START);
+        HashMap<String, String> unsettled = new HashMap<String, String>(since.unsettled());
+        HashSet<String> visited = new HashSet<String>();
+        HashSet<String> newestIds = new HashSet<String>(since.newestIds());
+        long newest = since.newest();
+
+        // offsets shift while payments are created, so a payment may be listed twice
+        try (Stream<Payment> listing = this.stream(DEFAULT_PAGE_SIZE)) {
+            Iterator<Payment> payments = listing.iterator();
+
+            while (payments.hasNext())
+            {
+                Payment payment = payments.next();
+                long created = createdMillis(payment);
+
+                if (payment.id == null || !visited.add(payment.id))
+                    continue;
+
+                boolean seen = since.hasSeen(payment.id, created);
+
+                if (seen && !unsettled.containsKey(payment.id))
+                    break;
+
+                if (!seen || !Objects.equals(unsettled.get(payment.id), payment.status))
+                    changes.accept(payment);
+
+                track(unsettled, payment);
+
+                if (created > newest) {
+                    newest = created;
+                    newestIds.clear();
+                }
+
+                if (created == newest && created != Long.MIN_VALUE)
+                    newestIds.add(payment.id);
+            }
+        } catch (UncheckedMollieException e) {
+            throw e.getCause();
+        }
+
+        ArrayList<String> remaining = new ArrayList<String>(unsettled.keySet());
+        remaining.removeAll(visited);
+
+        List<BatchResult<Payment>> fetched = this.await(new Batch<String, Payment>(remaining, paymentId -> {
+            this.evict(paymentId);
+            return this.getAsync(paymentId);
+        }, DEFAULT_MAX_IN_FLIGHT).start(), "syncing");
+
+        for (BatchResult<Payment> result : fetched)
+        {
+            String paymentId = remaining.get(result.index());
+            Payment payment = result.value();
+
+            if (!result.isSuccess())
+            {
+                // only a payment that is gone will not settle by asking again
+                if (isGone(result.error()))
+                    unsettled.remove(paymentId);
+
+                failures.accept(paymentId, result.error());
+                continue;
+            }
+
+            if (!Objects.equals(unsettled.get(paymentId), payment.status))
+                changes.accept(payment);
+
+            track(unsettled, payment);
+        }
+
+        return new SyncCursor(newest, newestIds, unsettled);
+    }
+
+    Map<String, Object> paymentData(BigDecimal amount, String method,
+            String description, String redirectUrl, Map<String, Object> meta)
     {
         LinkedHashMap<String, Object> payData = new LinkedHashMap<String, Object>();
 
@@ -68,7 +408,7 @@ public class Payments extends BaseResource<Payment> {
         if (meta != null)
             payData.put("metadata", meta);
 
-        return this.create(payData);
+        return payData;
     }
 
     /**
@@ -99,31 +439,139 @@ public class Payments extends BaseResource<Payment> {
     public PaymentRefund refund(Payment payment, BigDecimal amount) throws MollieException
     {
         String method = this.getResourceName() + "/" + payment.id + "/refunds";
-        JsonObject result = null;
+
+        try {
+            return this.performApiCall(REST_CREATE, method, refundBody(amount),
+                reader -> this.readRefund(reader, payment));
+        } finally {
+            this.evict(payment.id);
+        }
+    }
+
+    /**
+     * Refund a payment without blocking the calling thread. The passed payment
+     * argument will be updated to include the refund status once the refund
+     * has been created.
+     *
+     * @param payment {@link Payment} the payment to refund
+     * @return future completing with the {@link PaymentRefund}, or completing
+     * exceptionally with a {@link MollieException} if there was a problem
+     * creating the refund
+     *
+     * @see #refund(Payment payment)
+     */
+    public CompletableFuture<PaymentRefund> refundAsync(Payment payment) {
+        return refundAsync(payment, null);
+    }
+
+    /**
+     * Refund a payment without blocking the calling thread. This method can be
+     * used to partially refund a payment. The passed payment argument will be
+     * updated to include the refund status once the refund has been created.
+     *
+     * @param payment {@link Payment} the payment to refund
+     * @param amount the amount of the payment to refund.
+     * @return future completing with the {@link PaymentRefund}, or completing
+     * exceptionally with a {@link MollieException} if there was a problem
+     * creating the refund
+     *
+     * @see #refund(Payment payment, BigDecimal amount)
+     */
+    public CompletableFuture<PaymentRefund> refundAsync(final Payment payment, BigDecimal amount)
+    {
+        String method = this.getResourceName() + "/" + payment.id + "/refunds";
+
+        return this.performApiCallAsync(REST_CREATE, method, refundBody(amount),
+                reader -> this.readRefund(reader, payment))
+            .whenComplete((refund, failure) -> this.evict(payment.id));
+    }
+
+    private List<BatchResult<Payment>> await(CompletableFuture<List<BatchResult<Payment>>> results,
+            String action) throws MollieException
+    {
+        try {
+            return results.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            results.cancel(false);
+            throw new MollieException("Interrupted while " + action + " payments");
+        } catch (ExecutionException e) {
+            throw MollieException.withCause("Failed while " + action + " payments: " + e.getCause(), e.getCause());
+        }
+    }
+
+    /**
+     * Keeps the status of open and pending payments in a sync cursor.
+     */
+    private static void track(Map<String, String> unsettled, Payment payment)
+    {
+        if (Payment.STATUS_OPEN.equals(payment.status) || Payment.STATUS_PENDING.equals(payment.status))
+            unsettled.put(payment.id, payment.status);
+        else
+            unsettled.remove(payment.id);
+    }
+
+    /**
+     * @return whether an error reports that a payment does not exist.
+     */
+    private static boolean isGone(MollieException error)
+    {
+        return (error.getStatus() == 404 || error.getStatus() == 410);
+    }
+
+    /**
+     * @return creation time of a payment in milliseconds, or
+     * {@link Long#MIN_VALUE} if it is not known.
+     */
+    private static long createdMillis(Payment payment)
+    {
+        try {
+            return (payment.createdDatetime != null ?
+                Instant.parse(payment.createdDatetime).toEpochMilli() : Long.MIN_VALUE);
+        } catch (DateTimeParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Cached payments are copied on the way in and out, so callers can never
+     * modify a cached payment.
+     */
+    private Payment copy(Payment payment)
+    {
+        Payment copy = null;
+
+        if (payment != null) {
+            copy = new Payment();
+            this.copyInto(payment, copy);
+        }
+
+        return copy;
+    }
+
+    private String refundBody(BigDecimal amount)
+    {
         String methodBody = null;
 
         if (amount != null)
         {
-            Gson gson = new Gson();
             LinkedHashMap<String, Object> refundData = new LinkedHashMap<String, Object>();
 
             refundData.put("amount", amount);
-            methodBody = gson.toJson(refundData);
+            methodBody = _api.codec().toJson(refundData);
         }
 
-        result = this.performApiCall(REST_CREATE, method, methodBody);
-
-        if (result != null) {
-            Gson gson = new Gson();
-            PaymentRefund refund = gson.fromJson(result, PaymentRefund.class);
+        return methodBody;
+    }
 
-            if (refund != null && refund.payment != null) {
-                this.copyInto(refund.payment, payment);
-            }
+    private PaymentRefund readRefund(JsonReader reader, Payment payment) throws IOException
+    {
+        PaymentRefund refund = this.readObject(reader, PaymentRefund.class);
 
-            return refund;
+        if (refund != null && refund.payment != null) {
+            this.copyInto(refund.payment, payment);
         }
 
-        return null;
+        return refund;
     }
 }
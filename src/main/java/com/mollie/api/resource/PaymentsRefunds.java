@@ -34,15 +34,17 @@ import com.mollie.api.objects.PaymentRefund;
 
 public class PaymentsRefunds extends BaseResource<PaymentRefund> {
     private String _paymentId;
+    private String _resourceName;
 
     public PaymentsRefunds(MollieClient api, String paymentId) {
         super(api);
         _paymentId = paymentId;
+        _resourceName = "payments/" + paymentId + "/refunds";
     }
 
     @Override
     protected String getResourceName() {
-        return "payments/" + _paymentId + "/refunds";
+        return _resourceName;
     }
 }
 
@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.resource;
+
+import java.util.Map;
+
+/**
+ * Percent-encodes query parameters as UTF-8, leaving only the unreserved
+ * characters of RFC 3986 as is. Values made of unreserved characters only,
+ * such as ids and numbers, are appended without being copied.
+ */
+final class QueryEncoder {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final boolean[] UNRESERVED = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++)
+            UNRESERVED[c] = true;
+        for (char c = 'A'; c <= 'Z'; c++)
+            UNRESERVED[c] = true;
+        for (char c = '0'; c <= '9'; c++)
+            UNRESERVED[c] = true;
+
+        UNRESERVED['-'] = UNRESERVED['.'] = UNRESERVED['_'] = UNRESERVED['~'] = true;
+    }
+
+    private QueryEncoder() {
+    }
+
+    /**
+     * Appends the options as an encoded query string, without leading
+     * question mark.
+     *
+     * @param query builder to append to
+     * @param options the query parameters
+     * @return the builder
+     */
+    static StringBuilder appendQuery(StringBuilder query, Map<String, String> options)
+    {
+        boolean first = true;
+
+        for (Map.Entry<String, String> entry : options.entrySet()) {
+            if (!first)
+                query.append('&');
+
+            appendParameter(query, entry.getKey(), entry.getValue());
+            first = false;
+        }
+
+        return query;
+    }
+
+    /**
+     * Appends a single encoded name=value pair.
+     *
+     * @param query builder to append to
+     * @param name the parameter name
+     * @param value the parameter value, or null for a parameter without value
+     * @return the builder
+     */
+    static StringBuilder appendParameter(StringBuilder query, String name, String value)
+    {
+        append(query, name);
+
+        if (value != null)
+            append(query.append('='), value);
+
+        return query;
+    }
+
+    /**
+     * Appends a percent-encoded value.
+     *
+     * @param query builder to append to
+     * @param value the value to encode
+     */
+    static void append(StringBuilder query, String value)
+    {
+        int length = value.length();
+        int plain = 0;
+
+        while (plain < length && isUnreserved(value.charAt(plain)))
+            plain++;
+
+        if (plain == length) {
+            query.append(value);
+            return;
+        }
+
+        query.append(value, 0, plain);
+
+        for (int i = plain; i < length; i++) {
+            char c = value.charAt(i);
+
+            if (isUnreserved(c)) {
+                query.append(c);
+            } else if (c < 0x80) {
+                appendByte(query, c);
+            } else if (c < 0x800) {
+                appendByte(query, 0xC0 | (c >> 6));
+                appendByte(query, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                       Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+
+                appendByte(query, 0xF0 | (codePoint >> 18));
+                appendByte(query, 0x80 | ((codePoint >> 12) & 0x3F));
+                appendByte(query, 0x80 | ((codePoint >> 6) & 0x3F));
+                appendByte(query, 0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogates are not valid UTF-16 and encode as '?'
+                appendByte(query, '?');
+            } else {
+                appendByte(query, 0xE0 | (c >> 12));
+                appendByte(query, 0x80 | ((c >> 6) & 0x3F));
+                appendByte(query, 0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static boolean isUnreserved(char c)
+    {
+        return (c < 128 && UNRESERVED[c]);
+    }
+
+    private static void appendByte(StringBuilder query, int b)
+    {
+        query.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.resource;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.mollie.api.MollieException;
+
+/**
+ * Streaming reader for api responses. Detects an <code>error</code> member
+ * of the top level object while the response is being bound, so a single
+ * pass over the response suffices for both results and errors.
+ */
+class ResponseJsonReader extends JsonReader {
+    private int _depth;
+
+    ResponseJsonReader(Reader in) {
+        super(in);
+        setLenient(true);
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        super.beginObject();
+        _depth++;
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        super.endObject();
+        _depth--;
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        super.beginArray();
+        _depth++;
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        super.endArray();
+        _depth--;
+    }
+
+    @Override
+    public String nextName() throws IOException
+    {
+        String name = super.nextName();
+
+        if (_depth == 1 && name.equals("error")) {
+            throw new ApiError(readError());
+        }
+
+        return name;
+    }
+
+    /**
+     * Reads the error object of an api response.
+     *
+     * @return exception describing the error
+     * @throws IOException if the error could not be read
+     */
+    private MollieException readError() throws IOException
+    {
+        MollieException exception = null;
+        String type = null;
+        String message = null;
+        String field = null;
+
+        if (peek() != JsonToken.BEGIN_OBJECT) {
+            return new MollieException("Error executing API call: " + nextString() + ".");
+        }
+
+        super.beginObject();
+
+        while (hasNext())
+        {
+            String name = super.nextName();
+
+            if (peek() == JsonToken.NULL) {
+                skipValue();
+            } else if (name.equals("type")) {
+                type = nextString();
+            } else if (name.equals("message")) {
+                message = nextString();
+            } else if (name.equals("field")) {
+                field = nextString();
+            } else {
+                skipValue();
+            }
+        }
+
+        super.endObject();
+
+        exception = MollieException.apiError(type,
+            "Error executing API call (" + type +"): " + message + ".", field);
+
+        return exception;
+    }
+
+    /**
+     * Thrown from within a streaming bind when the response turns out to be
+     * an api error, and unwrapped again by the resource.
+     */
+    @SuppressWarnings("serial")
+    static class ApiError extends RuntimeException {
+        final MollieException exception;
+
+        ApiError(MollieException exception) {
+            super(exception.getMessage(), null, false, false);
+            this.exception = exception;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.resource;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Position of an incremental payment sync, returned by
+ * {@link Payments#syncSince(SyncCursor)}. It holds the creation time of the
+ * newest payment seen and the status of the payments seen that were still
+ * open or pending. A cursor is immutable and can be persisted through
+ * {@link #toString()} and {@link #parse(String)}.
+ */
+public final class SyncCursor {
+    /**
+     * Cursor of a sync that has not seen any payments yet.
+     */
+    public static final SyncCursor START = new SyncCursor(Long.MIN_VALUE,
+        Collections.<String>emptySet(), Collections.<String, String>emptyMap());
+
+    private static final String VERSION = "1";
+
+    private final long _newest;
+    private final Set<String> _newestIds;
+    private final Map<String, String> _unsettled;
+
+    /**
+     * @param newest creation time in milliseconds of the newest payment seen
+     * @param newestIds ids of the payments seen created at that time
+     * @param unsettled status by id of the payments seen that were still open
+     * or pending
+     */
+    SyncCursor(long newest, Set<String> newestIds, Map<String, String> unsettled)
+    {
+        _newest = newest;
+        _newestIds = Collections.unmodifiableSet(new HashSet<String>(newestIds));
+        _unsettled = Collections.unmodifiableMap(new HashMap<String, String>(unsettled));
+    }
+
+    /**
+     * @return creation time in milliseconds since the epoch of the newest
+     * payment seen, or {@link Long#MIN_VALUE} if none was seen.
+     */
+    public long newest() { return _newest; }
+
+    /**
+     * @return status by id of the payments seen that were still open or
+     * pending, which are checked again by the next sync.
+     */
+    public Map<String, String> unsettled() { return _unsettled; }
+
+    /**
+     * @param paymentId id of a payment
+     * @param created creation time of the payment in milliseconds, or
+     * {@link Long#MIN_VALUE} if it is not known
+     * @return whether a payment was seen by the syncs leading to this cursor.
+     * A payment whose creation time is not known is never seen.
+     */
+    boolean hasSeen(String paymentId, long created)
+    {
+        if (created == Long.MIN_VALUE)
+            return false;
+
+        return (created < _newest || (created == _newest && _newestIds.contains(paymentId)));
+    }
+
+    Set<String> newestIds() { return _newestIds; }
+
+    /**
+     * Restores a cursor persisted with {@link #toString()}.
+     *
+     * @param cursor the persisted cursor
+     * @return the cursor
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    public static SyncCursor parse(String cursor)
+    {
+        String[] parts = cursor.split("\\|", -1);
+        HashSet<String> newestIds = new HashSet<String>();
+        HashMap<String, String> unsettled = new HashMap<String, String>();
+
+        if (parts.length != 4 || !parts[0].equals(VERSION))
+            throw new IllegalArgumentException("Invalid sync cursor: " + cursor);
+
+        try {
+            for (String paymentId : parts[2].split(",")) {
+                if (!paymentId.isEmpty())
+                    newestIds.add(paymentId);
+            }
+
+            for (String entry : parts[3].split(",")) {
+                int separator = entry.indexOf('=');
+
+                if (separator > 0)
+                    unsettled.put(entry.substring(0, separator), entry.substring(separator + 1));
+                else if (!entry.isEmpty())
+                    throw new IllegalArgumentException("Invalid sync cursor: " + cursor);
+            }
+
+            return new SyncCursor(Long.parseLong(parts[1]), newestIds, unsettled);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid sync cursor: " + cursor);
+        }
+    }
+
+    /**
+     * @return the cursor in a form restored by {@link #parse(String)}.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder cursor = new StringBuilder(32 + 16 * (_newestIds.size() + 2 * _unsettled.size()));
+        String separator = "";
+
+        cursor.append(VERSION).append('|').append(_newest).append('|');
+
+        for (String paymentId : _newestIds) {
+            cursor.append(separator).append(paymentId);
+            separator = ",";
+        }
+
+        cursor.append('|');
+        separator = "";
+
+        for (Map.Entry<String, String> entry : _unsettled.entrySet()) {
+            cursor.append(separator).append(entry.getKey()).append('=').append(entry.getValue());
+            separator = ",";
+        }
+
+        return cursor.toString();
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        if (!(other instanceof SyncCursor))
+            return false;
+
+        SyncCursor cursor = (SyncCursor)other;
+
+        return (_newest == cursor._newest && _newestIds.equals(cursor._newestIds)
+            && _unsettled.equals(cursor._unsettled));
+    }
+
+    @Override
+    public int hashCode() {
+        return (int)(_newest ^ (_newest >>> 32)) * 31 + _unsettled.hashCode();
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reader decoding utf-8 straight from a response body into the buffer of
+ * the json reader, through a byte buffer taken from a pool and sized from
+ * the Content-Length of the response. Unlike an
+ * {@link java.io.InputStreamReader} it allocates no 8 KiB byte buffer per
+ * response. Malformed input is replaced by U+FFFD.
+ *
+ * The byte buffer must be handed back with {@link #release()} once the
+ * response has been read.
+ */
+class Utf8Reader extends Reader {
+    static final BufferPool BUFFERS = new BufferPool(8192,
+        Math.min(64, 2 * Runtime.getRuntime().availableProcessors()));
+
+    private final InputStream _in;
+    private final CharsetDecoder _decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private byte[] _buffer;
+    private ByteBuffer _bytes;
+    private boolean _eof;
+
+    /**
+     * Whether the decoder has been flushed at the end of the input, after
+     * which every read returns -1.
+     */
+    private boolean _flushed;
+
+    /**
+     * Second half of a surrogate pair decoded for a single char read, or 0.
+     */
+    private char _pending;
+
+    /**
+     * @param in the utf-8 encoded input
+     * @param contentLength number of bytes expected, or -1 if unknown
+     */
+    Utf8Reader(InputStream in, int contentLength)
+    {
+        _in = in;
+        _buffer = BUFFERS.acquire(contentLength);
+        _bytes = ByteBuffer.wrap(_buffer);
+        ((Buffer)_bytes).limit(0);
+    }
+
+    @Override
+    public int read(char[] chars, int offset, int length) throws IOException
+    {
+        if (_buffer == null)
+            throw new IOException("Reader released");
+
+        if (length == 0)
+            return 0;
+
+        if (_pending != 0) {
+            chars[offset] = _pending;
+            _pending = 0;
+            return 1;
+        }
+
+        if (_flushed)
+            return -1;
+
+        // a supplementary character needs room for two chars
+        if (length == 1)
+        {
+            char[] pair = new char[2];
+            int read = this.read(pair, 0, 2);
+
+            if (read == 2)
+                _pending = pair[1];
+            if (read > 0)
+                chars[offset] = pair[0];
+
+            return read;
+        }
+
+        CharBuffer out = CharBuffer.wrap(chars, offset, length);
+
+        while (true)
+        {
+            _decoder.decode(_bytes, out, _eof);
+
+            if (out.position() > offset)
+                break;
+
+            if (_eof) {
+                _decoder.flush(out);
+                _flushed = true;
+                break;
+            }
+
+            this.fill();
+        }
+
+        return (out.position() > offset ? out.position() - offset : -1);
+    }
+
+    /**
+     * Returns the byte buffer to the pool. The underlying stream is left
+     * open.
+     */
+    void release()
+    {
+        byte[] buffer = _buffer;
+
+        _buffer = null;
+        _bytes = null;
+
+        if (buffer != null)
+            BUFFERS.release(buffer);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.release();
+        _in.close();
+    }
+
+    /**
+     * Moves the undecoded bytes to the start of the buffer and reads more
+     * after them.
+     */
+    private void fill() throws IOException
+    {
+        _bytes.compact();
+
+        int read = _in.read(_buffer, _bytes.position(), _bytes.remaining());
+
+        if (read < 0)
+            _eof = true;
+        else
+            ((Buffer)_bytes).position(_bytes.position() + read);
+
+        ((Buffer)_bytes).flip();
+    }
+}
@@ -0,0 +1,402 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.watch;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.mollie.api.MollieClient;
+import com.mollie.api.MollieException;
+import com.mollie.api.objects.Payment;
+import com.mollie.api.resource.Payments;
+import com.mollie.api.webhook.PaymentStatusListener;
+
+/**
+ * Polls open and pending payments until they reach a final status, and
+ * reports their status changes to the registered
+ * {@link PaymentStatusListener}s. A payment stops being watched once its
+ * status is neither open nor pending.
+ *
+ * Watched payments are held in a hashed timing wheel, so tens of thousands
+ * of payments cost a single timer thread. A payment is polled often while
+ * it is young and less often as it ages: the interval is a tenth of its
+ * age, kept between the minimum and maximum interval, and never beyond the
+ * moment its expiry period ends. At most <code>maxConcurrentPolls</code>
+ * polls are in flight at the same time; payments due while the budget is
+ * used up are deferred, each time twice as long, up to the minimum
+ * interval.
+ *
+ * Listeners are called on the thread completing the poll, so they must be
+ * thread safe and fast. Events for a single payment are never delivered
+ * concurrently.
+ */
+public class PaymentWatcher implements Closeable {
+    public static final int DEFAULT_MAX_CONCURRENT_POLLS = 8;
+    public static final long DEFAULT_MIN_INTERVAL = 2000;
+    public static final long DEFAULT_MAX_INTERVAL = 900000;
+    public static final long DEFAULT_TICK = 100;
+
+    private static final int SLOTS = 512;
+
+    /**
+     * Polling interval as a fraction of the age of a payment.
+     */
+    private static final int AGE_DIVISOR = 10;
+
+    private final MollieClient _client;
+    private final long _minInterval;
+    private final long _maxInterval;
+    private final long _tick;
+    private final Semaphore _budget;
+    private final ConcurrentHashMap<String, Watch> _watches = new ConcurrentHashMap<String, Watch>();
+    private final CopyOnWriteArrayList<PaymentStatusListener> _listeners =
+        new CopyOnWriteArrayList<PaymentStatusListener>();
+
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final TimingWheel<Watch> _wheel;
+    private final ScheduledExecutorService _timer;
+
+    /**
+     * Creates a watcher polling at most {@link #DEFAULT_MAX_CONCURRENT_POLLS}
+     * payments at the same time, every {@link #DEFAULT_MIN_INTERVAL} to
+     * {@link #DEFAULT_MAX_INTERVAL} milliseconds.
+     *
+     * @param client the client to poll payments with
+     */
+    public PaymentWatcher(MollieClient client)
+    {
+        this(client, DEFAULT_MAX_CONCURRENT_POLLS, DEFAULT_MIN_INTERVAL, DEFAULT_MAX_INTERVAL, DEFAULT_TICK);
+    }
+
+    /**
+     * @param client the client to poll payments with
+     * @param maxConcurrentPolls maximum number of polls in flight
+     * @param minInterval minimum time in milliseconds between two polls of
+     * a payment
+     * @param maxInterval maximum time in milliseconds between two polls of
+     * a payment
+     * @param tick resolution of the polling schedule in milliseconds
+     */
+    public PaymentWatcher(MollieClient client, int maxConcurrentPolls,
+                          long minInterval, long maxInterval, long tick)
+    {
+        if (maxConcurrentPolls < 1 || tick < 1 || minInterval < tick || maxInterval < minInterval)
+            throw new IllegalArgumentException("Invalid payment watcher settings");
+
+        _client = client;
+        _minInterval = TimeUnit.MILLISECONDS.toNanos(minInterval);
+        _maxInterval = TimeUnit.MILLISECONDS.toNanos(maxInterval);
+        _tick = TimeUnit.MILLISECONDS.toNanos(tick);
+        _budget = new Semaphore(maxConcurrentPolls);
+        _wheel = new TimingWheel<Watch>(_tick, SLOTS, System.nanoTime(), watch -> watch.removed);
+
+        _timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mollie-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        _timer.scheduleAtFixedRate(this::advance, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    public void addListener(PaymentStatusListener listener) { _listeners.add(listener); }
+    public void removeListener(PaymentStatusListener listener) { _listeners.remove(listener); }
+
+    /**
+     * @return number of payments watched.
+     */
+    public int watching() { return _watches.size(); }
+
+    /**
+     * @param paymentId id of the payment
+     * @return whether the payment is watched.
+     */
+    public boolean isWatching(String paymentId) { return _watches.containsKey(paymentId); }
+
+    /**
+     * Watches a payment whose status is not known yet. The first poll reports
+     * its status as a change from null.
+     *
+     * @param paymentId id of the payment
+     * @return true if the payment was not watched already.
+     */
+    public boolean watch(String paymentId)
+    {
+        return this.watch(new Watch(paymentId, null, System.nanoTime(), Long.MAX_VALUE));
+    }
+
+    /**
+     * Watches a payment, typically one just created. Its creation time and
+     * expiry period set the polling schedule, and only changes from its
+     * current status are reported. Payments with a final status are not
+     * watched.
+     *
+     * @param payment the payment
+     * @return true if the payment was not watched already and does not have
+     * a final status.
+     */
+    public boolean watch(Payment payment)
+    {
+        long now = System.nanoTime();
+        long origin = now;
+        long expires = Long.MAX_VALUE;
+
+        if (isFinal(payment.status))
+            return false;
+
+        try {
+            if (payment.createdDatetime != null) {
+                long age = System.currentTimeMillis() - Instant.parse(payment.createdDatetime).toEpochMilli();
+                origin = now - TimeUnit.MILLISECONDS.toNanos(Math.max(0, age));
+            }
+
+            if (payment.createdDatetime != null && payment.expiryPeriod != null)
+                expires = origin + Duration.parse(payment.expiryPeriod).toNanos();
+        } catch (DateTimeParseException | ArithmeticException e) {
+            // polled by age only
+        }
+
+        return this.watch(new Watch(payment.id, payment.status, origin, expires));
+    }
+
+    /**
+     * Stops watching a payment.
+     *
+     * @param paymentId id of the payment
+     * @return true if the payment was watched.
+     */
+    public boolean unwatch(String paymentId)
+    {
+        Watch watch = _watches.remove(paymentId);
+
+        if (watch != null)
+            watch.removed = true;
+
+        return (watch != null);
+    }
+
+    /**
+     * Stops polling. Polls in flight complete without reporting.
+     */
+    public void close()
+    {
+        _timer.shutdownNow();
+
+        for (String paymentId : _watches.keySet())
+            this.unwatch(paymentId);
+    }
+
+    private boolean watch(Watch watch)
+    {
+        long now = System.nanoTime();
+
+        if (_timer.isShutdown() || _watches.putIfAbsent(watch.paymentId, watch) != null)
+            return false;
+
+        this.schedule(watch, now + this.interval(watch, now));
+        return true;
+    }
+
+    /**
+     * Polls the payments that became due, as far as the budget allows, and
+     * defers the others. Runs on the timer thread.
+     */
+    private void advance()
+    {
+        long now = System.nanoTime();
+        boolean budget = true;
+        List<Watch> due = null;
+
+        _lock.lock();
+
+        try {
+            due = _wheel.advance(now);
+        } finally {
+            _lock.unlock();
+        }
+
+        for (Watch watch : due)
+        {
+            budget = budget && _budget.tryAcquire();
+
+            if (budget) {
+                watch.deferrals = 0;
+                this.poll(watch);
+            } else {
+                this.schedule(watch, now + this.deferral(watch));
+            }
+        }
+    }
+
+    private void poll(final Watch watch)
+    {
+        Payments payments = _client.payments();
+
+        // a cached payment would hide the change being polled for
+        payments.evict(watch.paymentId);
+
+        try {
+            payments.getAsync(watch.paymentId)
+                .whenComplete((payment, failure) -> {
+                    _budget.release();
+                    this.polled(watch, payment, failure);
+                });
+        } catch (RuntimeException e) {
+            _budget.release();
+            this.polled(watch, null, e);
+        }
+    }
+
+    private void polled(Watch watch, Payment payment, Throwable failure)
+    {
+        long now = System.nanoTime();
+        String previous = watch.status;
+
+        if (watch.removed)
+            return;
+
+        if (failure != null)
+        {
+            Throwable cause = (failure instanceof CompletionException && failure.getCause() != null ?
+                failure.getCause() : failure);
+            MollieException error = (cause instanceof MollieException ? (MollieException)cause :
+                MollieException.withCause("Unable to communicate with Mollie: " + cause, cause));
+
+            for (PaymentStatusListener listener : _listeners)
+                this.deliver(() -> listener.fetchFailed(watch.paymentId, error));
+        }
+        else
+        {
+            watch.status = payment.status;
+
+            if (isFinal(payment.status))
+                this.unwatch(watch.paymentId);
+
+            if (!Objects.equals(previous, payment.status))
+            {
+                for (PaymentStatusListener listener : _listeners)
+                    this.deliver(() -> listener.statusChanged(payment, previous));
+            }
+        }
+
+        if (!watch.removed)
+            this.schedule(watch, now + this.interval(watch, now));
+    }
+
+    private void schedule(Watch watch, long deadline)
+    {
+        _lock.lock();
+
+        try {
+            _wheel.schedule(watch, deadline);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return time in nanoseconds until the next poll of a payment.
+     */
+    private long interval(Watch watch, long now)
+    {
+        long interval = Math.max(_minInterval, Math.min(_maxInterval, (now - watch.origin) / AGE_DIVISOR));
+
+        // poll right after the payment expires
+        if (watch.expires != Long.MAX_VALUE && watch.expires > now)
+            interval = Math.max(_minInterval, Math.min(interval, watch.expires - now + _tick));
+
+        return interval;
+    }
+
+    /**
+     * @return time in nanoseconds a due payment waits for the budget, twice
+     * as long as the previous time it waited.
+     */
+    private long deferral(Watch watch)
+    {
+        long deferral = _tick << Math.min(watch.deferrals, Long.numberOfLeadingZeros(_tick) - 1);
+
+        if (deferral < _minInterval)
+            watch.deferrals++;
+
+        return Math.min(_minInterval, deferral);
+    }
+
+    /**
+     * Calls a listener, printing anything it throws so the other listeners
+     * are still called.
+     */
+    private void deliver(Runnable call)
+    {
+        try {
+            call.run();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean isFinal(String status)
+    {
+        return (status != null && !Payment.STATUS_OPEN.equals(status) && !Payment.STATUS_PENDING.equals(status));
+    }
+
+    private static class Watch {
+        final String paymentId;
+        final long origin;
+        final long expires;
+        volatile String status;
+        volatile boolean removed;
+
+        /**
+         * Number of times the payment was due while the budget was used up,
+         * only used by the timer thread.
+         */
+        int deferrals;
+
+        Watch(String paymentId, String status, long origin, long expires)
+        {
+            this.paymentId = paymentId;
+            this.status = status;
+            this.origin = origin;
+            this.expires = expires;
+        }
+    }
+}
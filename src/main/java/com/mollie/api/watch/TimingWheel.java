@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.watch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Hashed timing wheel: a ring of slots, each holding the items due in the
+ * ticks that map to it. Scheduling an item and finding the items due in a
+ * tick are constant time regardless of the number of items held; an item
+ * due more than one revolution ahead stays in its slot and is passed over
+ * until its revolution comes. Cancelled items are dropped whenever their
+ * slot is visited, so they are gone within a revolution.
+ *
+ * Not thread safe.
+ *
+ * @param <T> type of the items
+ */
+class TimingWheel<T> {
+    private final long _tick;
+    private final long _start;
+    private final Predicate<? super T> _cancelled;
+    private final ArrayList<Timer<T>>[] _slots;
+    private final int _mask;
+    private long _currentTick;
+
+    /**
+     * @param tick duration of a tick in nanoseconds
+     * @param slots number of slots, rounded up to a power of two
+     * @param start time in nanoseconds of the first tick
+     * @param cancelled tells whether an item is cancelled
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimingWheel(long tick, int slots, long start, Predicate<? super T> cancelled)
+    {
+        int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+
+        if (tick < 1)
+            throw new IllegalArgumentException("A tick must last at least a nanosecond");
+
+        _tick = tick;
+        _start = start;
+        _cancelled = cancelled;
+        _slots = new ArrayList[size];
+        _mask = size - 1;
+
+        for (int i = 0; i < size; i++)
+            _slots[i] = new ArrayList<Timer<T>>();
+    }
+
+    /**
+     * Schedules an item. Items due in a tick that has passed already are due
+     * in the next tick.
+     *
+     * @param item the item
+     * @param deadline time in nanoseconds the item is due
+     */
+    void schedule(T item, long deadline)
+    {
+        long tick = Math.max(_currentTick + 1, (deadline - _start + _tick - 1) / _tick);
+
+        _slots[(int)(tick & _mask)].add(new Timer<T>(item, tick));
+    }
+
+    /**
+     * Advances the wheel up to the given time.
+     *
+     * @param now current time in nanoseconds
+     * @return the items that became due and are not cancelled.
+     */
+    List<T> advance(long now)
+    {
+        long target = (now - _start) / _tick;
+        List<T> due = new ArrayList<T>();
+
+        // a full revolution visits every slot once
+        if (target - _currentTick > _slots.length)
+            _currentTick = target - _slots.length;
+
+        while (_currentTick < target)
+        {
+            ArrayList<Timer<T>> slot = _slots[(int)(++_currentTick & _mask)];
+            int kept = 0;
+
+            for (int i = 0; i < slot.size(); i++)
+            {
+                Timer<T> timer = slot.get(i);
+
+                if (_cancelled.test(timer.item))
+                    continue;
+
+                if (timer.tick <= target)
+                    due.add(timer.item);
+                else
+                    slot.set(kept++, timer);
+            }
+
+            slot.subList(kept, slot.size()).clear();
+        }
+
+        return due;
+    }
+
+    private static class Timer<T> {
+        final T item;
+        final long tick;
+
+        Timer(T item, long tick)
+        {
+            this.item = item;
+            this.tick = tick;
+        }
+    }
+}
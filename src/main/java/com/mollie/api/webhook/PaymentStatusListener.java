@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.webhook;
+
+import com.mollie.api.MollieException;
+import com.mollie.api.objects.Payment;
+
+/**
+ * Receives the payments fetched by a {@link WebhookProcessor}. Listeners are
+ * called on the worker threads of the processor, so implementations must be
+ * thread safe. Events for a single payment are never delivered concurrently.
+ */
+public interface PaymentStatusListener {
+    /**
+     * Called when a payment is fetched with a status that differs from the
+     * status it was last fetched with.
+     *
+     * @param payment the payment as fetched from the api
+     * @param previousStatus status the payment was last fetched with, or null
+     * if the processor has not seen the payment before
+     */
+    void statusChanged(Payment payment, String previousStatus);
+
+    /**
+     * Called when a payment could not be fetched. The webhook has been
+     * accepted already, so the payment should be fetched again later.
+     *
+     * @param paymentId id of the payment
+     * @param error the error fetching the payment failed with
+     */
+    default void fetchFailed(String paymentId, MollieException error) {
+    }
+}
@@ -0,0 +1,360 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.webhook;
+
+import java.io.Closeable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.mollie.api.MollieClient;
+import com.mollie.api.MollieException;
+import com.mollie.api.objects.Payment;
+import com.mollie.api.resource.Payments;
+
+/**
+ * Processes the payment ids posted to a webhook. {@link #accept(String)}
+ * only queues the id, so the webhook can be answered right away. A fixed
+ * pool of workers fetches the queued payments through the client and
+ * reports status changes to the registered {@link PaymentStatusListener}s.
+ *
+ * Bursts are collapsed: an id accepted while it is still waiting for a worker
+ * is not queued again, and an id accepted while it is being fetched is
+ * fetched once more afterwards by the same worker, as it may have changed
+ * status in the meantime. An id waits for a worker for at most the dedup
+ * window, after which a new webhook queues it again; a payment is never
+ * fetched by two workers at the same time. The queue is bounded; when it is
+ * full webhooks are rejected, so they can be answered with an error and
+ * retried by Mollie later. The number of workers bounds the number of calls
+ * made to Mollie at the same time.
+ */
+public class WebhookProcessor implements Closeable {
+    /**
+     * Outcome of accepting a webhook.
+     */
+    public enum Acceptance {
+        /**
+         * The payment is queued to be fetched.
+         */
+        QUEUED,
+
+        /**
+         * The payment is already queued or being fetched.
+         */
+        DUPLICATE,
+
+        /**
+         * The queue is full or the processor is closed. The webhook should
+         * be answered with an error, so Mollie retries it later.
+         */
+        REJECTED
+    }
+
+    public static final int DEFAULT_WORKERS = 4;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    public static final long DEFAULT_DEDUP_WINDOW = 60000;
+    public static final int DEFAULT_MAX_TRACKED = 10000;
+
+    private final MollieClient _client;
+    private final long _dedupWindow;
+    private final ThreadPoolExecutor _workers;
+    private final CopyOnWriteArrayList<PaymentStatusListener> _listeners =
+        new CopyOnWriteArrayList<PaymentStatusListener>();
+
+    private final ReentrantLock _lock = new ReentrantLock();
+
+    /**
+     * Ids queued or being fetched, oldest first.
+     */
+    private final LinkedHashMap<String, Pending> _pending;
+
+    /**
+     * Status each payment was last fetched with, least recently fetched
+     * first.
+     */
+    private final LinkedHashMap<String, String> _statuses;
+
+    /**
+     * Creates a processor with {@link #DEFAULT_WORKERS} workers, a queue of
+     * {@link #DEFAULT_QUEUE_CAPACITY} payments, a dedup window of
+     * {@link #DEFAULT_DEDUP_WINDOW} milliseconds and tracking at most
+     * {@link #DEFAULT_MAX_TRACKED} payments.
+     *
+     * @param client the client to fetch payments with
+     */
+    public WebhookProcessor(MollieClient client)
+    {
+        this(client, DEFAULT_WORKERS, DEFAULT_QUEUE_CAPACITY, DEFAULT_DEDUP_WINDOW, DEFAULT_MAX_TRACKED);
+    }
+
+    /**
+     * @param client the client to fetch payments with
+     * @param workers number of payments fetched at the same time
+     * @param queueCapacity maximum number of payments waiting for a worker
+     * @param dedupWindow maximum time in milliseconds a payment waiting for
+     * a worker suppresses webhooks for the same payment
+     * @param maxTracked maximum number of payments whose webhooks are
+     * deduplicated and whose last status is remembered
+     */
+    public WebhookProcessor(MollieClient client, int workers, int queueCapacity,
+                            long dedupWindow, final int maxTracked)
+    {
+        if (workers < 1 || queueCapacity < 1 || dedupWindow < 0 || maxTracked < 1)
+            throw new IllegalArgumentException("Invalid webhook processor settings");
+
+        final AtomicInteger threads = new AtomicInteger();
+
+        _client = client;
+        _dedupWindow = TimeUnit.MILLISECONDS.toNanos(dedupWindow);
+
+        _pending = new LinkedHashMap<String, Pending>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Pending> eldest) {
+                // a payment being fetched is kept, so it is not fetched twice at once
+                return size() > maxTracked && !eldest.getValue().fetching;
+            }
+        };
+
+        _statuses = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxTracked;
+            }
+        };
+
+        _workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "mollie-webhook-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    public void addListener(PaymentStatusListener listener) { _listeners.add(listener); }
+    public void removeListener(PaymentStatusListener listener) { _listeners.remove(listener); }
+
+    /**
+     * @return number of payments waiting for a worker.
+     */
+    public int queued() { return _workers.getQueue().size(); }
+
+    /**
+     * Accepts a webhook for a payment. Returns without calling Mollie.
+     *
+     * @param paymentId id of the payment posted to the webhook
+     * @return whether the payment was queued, was a duplicate or was rejected
+     */
+    public Acceptance accept(String paymentId)
+    {
+        long now = System.nanoTime();
+        Pending pending = null;
+        Pending previous = null;
+
+        if (paymentId == null || paymentId.isEmpty())
+            throw new IllegalArgumentException("A payment id is required");
+
+        _lock.lock();
+
+        try {
+            previous = _pending.get(paymentId);
+
+            if (previous != null && previous.fetching)
+            {
+                previous.dirty = true;
+                return Acceptance.DUPLICATE;
+            }
+
+            if (previous != null && now - previous.accepted < _dedupWindow)
+                return Acceptance.DUPLICATE;
+
+            pending = new Pending(paymentId, now);
+
+            if (previous != null) {
+                previous.superseded = true;
+                _pending.remove(paymentId);
+            }
+
+            _pending.put(paymentId, pending);
+        } finally {
+            _lock.unlock();
+        }
+
+        try {
+            final Pending queued = pending;
+
+            _workers.execute(() -> this.process(queued));
+        } catch (RejectedExecutionException e) {
+            _lock.lock();
+
+            try {
+                _pending.remove(paymentId, pending);
+
+                if (previous != null && !_pending.containsKey(paymentId)) {
+                    previous.superseded = false;
+                    _pending.put(paymentId, previous);
+                }
+            } finally {
+                _lock.unlock();
+            }
+
+            return Acceptance.REJECTED;
+        }
+
+        return Acceptance.QUEUED;
+    }
+
+    /**
+     * Stops accepting webhooks and waits for the accepted ones to be
+     * processed.
+     */
+    public void close()
+    {
+        _workers.shutdown();
+
+        try {
+            _workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            _workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Fetches a queued payment, again for as long as webhooks for it arrive
+     * while it is being fetched. Does nothing when the payment was queued
+     * again in the meantime.
+     */
+    private void process(Pending pending)
+    {
+        boolean again = true;
+
+        while (again)
+        {
+            _lock.lock();
+
+            try {
+                if (pending.superseded)
+                    return;
+
+                pending.fetching = true;
+                pending.dirty = false;
+            } finally {
+                _lock.unlock();
+            }
+
+            this.fetch(pending.paymentId);
+
+            _lock.lock();
+
+            try {
+                again = pending.dirty;
+
+                if (!again)
+                    _pending.remove(pending.paymentId, pending);
+            } finally {
+                _lock.unlock();
+            }
+        }
+    }
+
+    private void fetch(String paymentId)
+    {
+        Payments payments = _client.payments();
+        Payment payment = null;
+        String previous = null;
+
+        // a cached payment may predate the change the webhook reports
+        payments.evict(paymentId);
+
+        try {
+            payment = payments.get(paymentId);
+        } catch (MollieException e) {
+            for (PaymentStatusListener listener : _listeners)
+                this.deliver(() -> listener.fetchFailed(paymentId, e));
+
+            return;
+        }
+
+        _lock.lock();
+
+        try {
+            previous = _statuses.put(paymentId, payment.status);
+        } finally {
+            _lock.unlock();
+        }
+
+        if (!Objects.equals(previous, payment.status))
+        {
+            final Payment changed = payment;
+            final String previousStatus = previous;
+
+            for (PaymentStatusListener listener : _listeners)
+                this.deliver(() -> listener.statusChanged(changed, previousStatus));
+        }
+    }
+
+    /**
+     * Calls a listener, printing anything it throws so the other listeners
+     * are still called.
+     */
+    private void deliver(Runnable call)
+    {
+        try {
+            call.run();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static class Pending {
+        final String paymentId;
+        final long accepted;
+        boolean fetching;
+        boolean dirty;
+        boolean superseded;
+
+        Pending(String paymentId, long accepted)
+        {
+            this.paymentId = paymentId;
+            this.accepted = accepted;
+        }
+    }
+}
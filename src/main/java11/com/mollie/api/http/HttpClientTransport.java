@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) 2015, Impending
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * @license     Berkeley Software Distribution License (BSD-License 2) http://www.opensource.org/licenses/bsd-license.php
+ * @author      Freddie Tilley <freddie.tilley@impending.nl>
+ * @copyright   Impending
+ * @link        http://www.impending.nl
+ */
+package com.mollie.api.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Transport based on the java.net.http client, which is available from
+ * Java 11. Requests are sent with HTTP/2 when the server supports it, so
+ * concurrent calls are multiplexed over a single connection, and
+ * asynchronous calls do not hold a thread while waiting for the server. The
+ * http client is created on first use. This is the Java 11 implementation,
+ * packaged in META-INF/versions/11 of the library jar.
+ */
+public class HttpClientTransport implements HttpTransport {
+    /**
+     * Headers the http client sets itself and does not allow to be set.
+     */
+    private static final Set<String> RESTRICTED_HEADERS = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        RESTRICTED_HEADERS.add("Connection");
+        RESTRICTED_HEADERS.add("Content-Length");
+        RESTRICTED_HEADERS.add("Expect");
+        RESTRICTED_HEADERS.add("Host");
+        RESTRICTED_HEADERS.add("Upgrade");
+    }
+
+    private final Executor _executor;
+    private volatile int _connectTimeout;
+    private volatile int _readTimeout;
+
+    private final ReentrantLock _lock = new ReentrantLock();
+    private volatile HttpClient _httpClient;
+
+    /**
+     * @return whether the runtime provides the java.net.http client.
+     */
+    public static boolean isSupported()
+    {
+        return true;
+    }
+
+    /**
+     * Creates a transport running asynchronous calls on the default executor
+     * of the http client.
+     */
+    public HttpClientTransport() {
+        _executor = null;
+    }
+
+    /**
+     * Creates a transport running asynchronous calls on the supplied executor.
+     *
+     * @param executor executor used for asynchronous calls
+     */
+    public HttpClientTransport(Executor executor) {
+        _executor = executor;
+    }
+
+    public int connectTimeout() { return _connectTimeout; }
+    public int readTimeout() { return _readTimeout; }
+
+    /**
+     * @param connectTimeout connect timeout in milliseconds, 0 waits forever.
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        _lock.lock();
+
+        try {
+            _connectTimeout = connectTimeout;
+            _httpClient = null;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @param readTimeout time in milliseconds to wait for the response
+     * headers, 0 waits forever.
+     */
+    public void setReadTimeout(int readTimeout) { _readTimeout = readTimeout; }
+
+    public TransportResponse execute(TransportRequest request) throws IOException
+    {
+        try {
+            return response(this.httpClient().send(this.createRequest(request),
+                HttpResponse.BodyHandlers.ofInputStream()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response");
+        }
+    }
+
+    public CompletableFuture<TransportResponse> executeAsync(TransportRequest request)
+    {
+        final CompletableFuture<TransportResponse> future = new CompletableFuture<TransportResponse>();
+
+        try {
+            this.httpClient().sendAsync(this.createRequest(request), HttpResponse.BodyHandlers.ofInputStream())
+                .whenComplete((response, failure) -> {
+                    if (failure instanceof CompletionException && failure.getCause() != null)
+                        future.completeExceptionally(failure.getCause());
+                    else if (failure != null)
+                        future.completeExceptionally(failure);
+                    else
+                        future.complete(response(response));
+                });
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    /**
+     * Releases the http client. Its connections are closed by the JDK once
+     * calls in progress have completed. The transport can still be used
+     * afterwards, in which case a new http client is created on the next
+     * call.
+     */
+    public void close() throws IOException
+    {
+        _lock.lock();
+
+        try {
+            _httpClient = null;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the http client shared by all calls, creating it on first use.
+     *
+     * @return the shared http client
+     */
+    protected HttpClient httpClient()
+    {
+        HttpClient httpClient = _httpClient;
+
+        if (httpClient != null)
+            return httpClient;
+
+        _lock.lock();
+
+        try {
+            if (_httpClient == null)
+                _httpClient = this.createHttpClient();
+
+            return _httpClient;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    private HttpClient createHttpClient()
+    {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NEVER);
+
+        if (_connectTimeout > 0)
+            builder.connectTimeout(Duration.ofMillis(_connectTimeout));
+        if (_executor != null)
+            builder.executor(_executor);
+
+        return builder.build();
+    }
+
+    private HttpRequest createRequest(TransportRequest request)
+    {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request.uri());
+
+        if (_readTimeout > 0)
+            builder.timeout(Duration.ofMillis(_readTimeout));
+
+        for (Map.Entry<String, String> header : request.headers().entrySet()) {
+            if (!RESTRICTED_HEADERS.contains(header.getKey()))
+                builder.header(header.getKey(), header.getValue());
+        }
+
+        return builder.method(request.method(), (request.body() != null ?
+            HttpRequest.BodyPublishers.ofByteArray(request.body()) :
+            HttpRequest.BodyPublishers.noBody())).build();
+    }
+
+    private static TransportResponse response(HttpResponse<InputStream> response)
+    {
+        LinkedHashMap<String, String> headers = new LinkedHashMap<String, String>();
+
+        for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+            if (!header.getValue().isEmpty())
+                headers.put(header.getKey(), header.getValue().get(0));
+        }
+
+        return new TransportResponse(response.statusCode(), headers, response.body());
+    }
+}
@@ -30,13 +30,60 @@
 
 package com.mollie.api;
 
+import com.mollie.api.http.HttpClientTransport;
+import com.mollie.api.http.JdkHttpTransport;
+import com.mollie.api.http.StubHttpTransport;
+import com.mollie.api.http.TransportRequest;
+import com.mollie.api.http.TransportResponse;
+import com.mollie.api.journal.PaymentJournal;
+import com.mollie.api.metrics.CallMetrics;
+import com.mollie.api.metrics.LatencyHistogram;
+import com.mollie.api.metrics.MetricsSnapshot;
 import com.mollie.api.objects.*;
+import com.mollie.api.resource.BatchResult;
+import com.mollie.api.resource.PaymentCache;
+import com.mollie.api.resource.PaymentSync;
+import com.mollie.api.resource.Payments;
+import com.mollie.api.resource.SyncCursor;
+import com.mollie.api.watch.PaymentWatcher;
+import com.mollie.api.webhook.PaymentStatusListener;
+import com.mollie.api.webhook.WebhookProcessor;
 
 import static org.mockito.Mockito.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+
+import com.sun.net.httpserver.HttpServer;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -45,10 +92,13 @@ import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
 public class ApiTest {
     private static String API_KEY = "test_dHar4XY7LxsDOtmnkVtjNVWXLSlXsM";
@@ -58,6 +108,9 @@ public class ApiTest {
     @Rule
     public ExpectedException thrown = ExpectedException.none();
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Before
     public void setUp() throws Exception {
         api = spy(new MollieClient());
@@ -66,6 +119,12 @@ public class ApiTest {
         api.setApiKey(API_KEY);
     }
 
+    private static TransportResponse response(String body)
+    {
+        return new TransportResponse(200, null,
+            new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
     @Test
     public void testInvalidApiKeyFails() throws MollieException
     {
@@ -92,7 +151,7 @@ public class ApiTest {
         thrown.expect(MollieException.class);
         thrown.expectMessage("Unable to decode Mollie response: \"\"");
 
-        doReturn("").when(api).performHttpCall(
+        doReturn(response("")).when(api).performHttpRequest(
             MollieClient.HTTP_POST, "payments", msgBody);
 
         try {
@@ -102,7 +161,7 @@ public class ApiTest {
         } catch (MollieException e) {
             throw e;
         } finally {
-            verify(api, times(1)).performHttpCall(MollieClient.HTTP_POST,
+            verify(api, times(1)).performHttpRequest(MollieClient.HTTP_POST,
                 "payments",
                 msgBody);
         }
@@ -117,7 +176,7 @@ public class ApiTest {
         thrown.expect(MollieException.class);
         thrown.expectMessage("Error executing API call (request): Unauthorized request.");
 
-        doReturn(msgReturn).when(api).performHttpCall(
+        doReturn(response(msgReturn)).when(api).performHttpRequest(
             MollieClient.HTTP_POST, "payments", msgBody);
 
         try {
@@ -127,7 +186,7 @@ public class ApiTest {
         } catch (MollieException e) {
             throw e;
         } finally {
-            verify(api, times(1)).performHttpCall(MollieClient.HTTP_POST,
+            verify(api, times(1)).performHttpRequest(MollieClient.HTTP_POST,
                 "payments",
                 msgBody);
         }
@@ -145,7 +204,7 @@ public class ApiTest {
                 "Order #1337 24 Roundhousekicks \x80 15,-",
                 "http://www.chucknorris.rhk/return.php", null);
         } catch (MollieException e) {
-            verify(api, never()).performHttpCall(anyString(),
+            verify(api, never()).performHttpRequest(anyString(),
                 anyString(), anyString());
             throw e;
         }
@@ -160,7 +219,7 @@ public class ApiTest {
 
         Payment payment = null;
 
-        doReturn(msgReturn).when(api).performHttpCall(
+        doReturn(response(msgReturn)).when(api).performHttpRequest(
             MollieClient.HTTP_POST, "payments", msgBody);
 
         try {
@@ -170,7 +229,7 @@ public class ApiTest {
         } catch (MollieException e) {
             throw e;
         } finally {
-            verify(api, times(1)).performHttpCall(MollieClient.HTTP_POST,
+            verify(api, times(1)).performHttpRequest(MollieClient.HTTP_POST,
                 "payments", msgBody);
         }
 
@@ -197,7 +256,7 @@ public class ApiTest {
 
         Payment payment = null;
 
-        doReturn(msgReturn).when(api).performHttpCall(
+        doReturn(response(msgReturn)).when(api).performHttpRequest(
             MollieClient.HTTP_GET, msgAction, null);
 
         try {
@@ -205,7 +264,7 @@ public class ApiTest {
         } catch (MollieException e) {
             throw e;
         } finally {
-            verify(api, times(1)).performHttpCall(MollieClient.HTTP_GET,
+            verify(api, times(1)).performHttpRequest(MollieClient.HTTP_GET,
                 msgAction, null);
         }
 
@@ -226,6 +285,77 @@ public class ApiTest {
         assertNull(payment.metadata);
     }
 
+    @Test
+    public void testGetPaymentAsyncWorksCorrectly() throws Exception
+    {
+        String msgReturn = "{ \"id\":\"tr_d0b0E3EA3v\", \"mode\":\"test\", \"createdDatetime\":\"2013-11-21T09:57:08.0Z\", \"status\":\"open\", \"amount\":100, \"description\":\"Order #1225\", \"method\":null, \"details\":null, \"links\":{ \"paymentUrl\":\"https://www.mollie.nl/payscreen/pay/d0b0E3EA3v\" } }";
+        String msgAction = "payments/tr_d0b0E3EA3v";
+
+        doReturn(CompletableFuture.completedFuture(response(msgReturn))).when(api)
+            .performHttpRequestAsync(MollieClient.HTTP_GET, msgAction, null);
+
+        Payment payment = api.payments().getAsync("tr_d0b0E3EA3v").get();
+
+        verify(api, times(1)).performHttpRequestAsync(MollieClient.HTTP_GET,
+            msgAction, null);
+        verify(api, never()).performHttpRequest(MollieClient.HTTP_GET,
+            msgAction, null);
+
+        assertNotNull(payment);
+        assertEquals("tr_d0b0E3EA3v", payment.id);
+        assertEquals(Payment.STATUS_OPEN, payment.status);
+        assertEquals("https://www.mollie.nl/payscreen/pay/d0b0E3EA3v",
+            payment.getPaymentUrl());
+    }
+
+    @Test
+    public void testCreatePaymentAsyncFailsError() throws Exception
+    {
+        String msgReturn = "{ \"error\":{ \"type\":\"request\", \"message\":\"Unauthorized request\", \"links\":{ \"documentation\":\"https://www.mollie.nl/api/docs/\" } } }";
+        String msgBody = "{\"amount\":100,\"description\":\"Order #1337 24 Roundhousekicks\",\"redirectUrl\":\"http://www.chucknorris.rhk/return.php\"}";
+
+        doReturn(CompletableFuture.completedFuture(response(msgReturn))).when(api)
+            .performHttpRequestAsync(MollieClient.HTTP_POST, "payments", msgBody);
+
+        CompletableFuture<Payment> future = api.payments().createAsync(
+            new BigDecimal(100), "Order #1337 24 Roundhousekicks",
+            "http://www.chucknorris.rhk/return.php", null);
+
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(MollieException.class));
+            assertEquals("Error executing API call (request): Unauthorized request.",
+                e.getCause().getMessage());
+        }
+
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testTransportReceivesRequest() throws MollieException
+    {
+        String msgReturn = "{ \"id\":\"tr_d0b0E3EA3v\", \"mode\":\"test\", \"status\":\"paid\", \"amount\":100 }";
+        StubHttpTransport transport = new StubHttpTransport();
+
+        transport.respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", msgReturn);
+        api.setTransport(transport);
+
+        Payment payment = api.payments().get("tr_d0b0E3EA3v");
+
+        assertEquals("tr_d0b0E3EA3v", payment.id);
+        assertEquals(Payment.STATUS_PAID, payment.status);
+        assertEquals(1, transport.requestCount(MollieClient.HTTP_GET,
+            "payments/tr_d0b0E3EA3v"));
+
+        TransportRequest request = transport.requests().get(0);
+
+        assertEquals("https://api.mollie.nl/v1/payments/tr_d0b0E3EA3v",
+            request.uri().toString());
+        assertEquals("Bearer " + API_KEY, request.header("Authorization"));
+        assertNull(request.body());
+    }
+
     @Test
     public void testGetPaymentsWorksCorrectly() throws MollieException
     {
@@ -249,7 +379,7 @@ public class ApiTest {
         List<Payment> collection = null;
         Payment payment = null;
 
-        doReturn(msgReturn).when(api).performHttpCall(
+        doReturn(response(msgReturn)).when(api).performHttpRequest(
             MollieClient.HTTP_GET, msgAction, null);
 
         try {
@@ -257,7 +387,7 @@ public class ApiTest {
         } catch (MollieException e) {
             throw e;
         } finally {
-            verify(api, times(1)).performHttpCall(MollieClient.HTTP_GET,
+            verify(api, times(1)).performHttpRequest(MollieClient.HTTP_GET,
                 msgAction, null);
         }
 
@@ -283,6 +413,93 @@ public class ApiTest {
         assertNull(payment.metadata);
     }
 
+    @Test
+    public void testIteratePaymentsFetchesAllPages() throws MollieException
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+
+        transport.respond(MollieClient.HTTP_GET, "payments?offset=0&count=2",
+            "{\"totalCount\":3,\"offset\":0,\"count\":2,\"data\":[{\"id\":\"tr_1\"},{\"id\":\"tr_2\"}]}");
+        transport.respond(MollieClient.HTTP_GET, "payments?offset=2&count=2",
+            "{\"totalCount\":3,\"offset\":2,\"count\":1,\"data\":[{\"id\":\"tr_3\"}]}");
+        api.setTransport(transport);
+
+        List<String> ids = new ArrayList<String>();
+
+        for (Payment payment : api.payments().iterate(2)) {
+            ids.add(payment.id);
+        }
+
+        assertEquals(Arrays.asList("tr_1", "tr_2", "tr_3"), ids);
+        assertEquals(2, transport.requests().size());
+        assertEquals(3, api.payments().stream(2).count());
+    }
+
+    @Test
+    public void testIteratePaymentsLimitsPagesToApiMaximum() throws MollieException
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+
+        transport.respond(MollieClient.HTTP_GET, "payments?offset=0&count=250", page(0, 250));
+        transport.respond(MollieClient.HTTP_GET, "payments?offset=250&count=250", page(250, 1));
+        api.setTransport(transport);
+
+        assertEquals(251, api.payments().stream(500).count());
+        assertEquals(2, transport.requests().size());
+    }
+
+    @Test
+    public void testIteratePaymentsRejectsEmptyPages() throws MollieException
+    {
+        api.setTransport(new StubHttpTransport());
+
+        thrown.expect(IllegalArgumentException.class);
+        api.payments().stream(0);
+    }
+
+    @Test
+    public void testExportPaymentsKeepsListingOrder() throws MollieException
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+
+        transport.respond(MollieClient.HTTP_GET, "payments?offset=0&count=2",
+            "{\"data\":[{\"id\":\"tr_1\"},{\"id\":\"tr_2\"}]}");
+        transport.respond(MollieClient.HTTP_GET, "payments?offset=2&count=2",
+            "{\"data\":[{\"id\":\"tr_3\"},{\"id\":\"tr_4\"}]}");
+        transport.respond(MollieClient.HTTP_GET, "payments?offset=4&count=2",
+            "{\"data\":[{\"id\":\"tr_5\"}]}");
+        transport.respond(MollieClient.HTTP_GET, "payments?offset=6&count=2",
+            "{\"data\":[]}");
+        transport.respond(MollieClient.HTTP_GET, "payments?offset=8&count=2",
+            "{\"data\":[]}");
+        api.setTransport(transport);
+
+        List<String> ids = api.payments().export(2, 3, 4, null)
+            .map(payment -> payment.id)
+            .collect(Collectors.toList());
+
+        assertEquals(Arrays.asList("tr_1", "tr_2", "tr_3", "tr_4", "tr_5"), ids);
+    }
+
+    @Test
+    public void testExportPaymentsLimitsPagesToApiMaximum() throws MollieException
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+
+        transport.respond(MollieClient.HTTP_GET, "payments?offset=0&count=250", page(0, 250));
+        transport.respond(MollieClient.HTTP_GET, "payments?offset=250&count=250", page(250, 250));
+        transport.respond(MollieClient.HTTP_GET, "payments?offset=500&count=250", page(500, 1));
+        transport.respond(MollieClient.HTTP_GET, "payments?offset=750&count=250", page(750, 0));
+        api.setTransport(transport);
+
+        List<String> ids = api.payments().export(1000, 2, 4, null)
+            .map(payment -> payment.id)
+            .collect(Collectors.toList());
+
+        assertEquals(501, ids.size());
+        assertEquals("tr_500", ids.get(500));
+    }
+
     @Test
     public void testCreateRefundWorksCorrectly() throws MollieException
     {
@@ -295,7 +512,7 @@ public class ApiTest {
 
         payment.id = "tr_OCrlrHqKsr";
 
-        doReturn(msgReturn).when(api).performHttpCall(
+        doReturn(response(msgReturn)).when(api).performHttpRequest(
             MollieClient.HTTP_POST, msgAction, msgBody);
 
         try {
@@ -303,7 +520,7 @@ public class ApiTest {
         } catch (MollieException e) {
             throw e;
         } finally {
-            verify(api, times(1)).performHttpCall(MollieClient.HTTP_POST,
+            verify(api, times(1)).performHttpRequest(MollieClient.HTTP_POST,
                 msgAction, msgBody);
         }
 
@@ -334,7 +551,7 @@ public class ApiTest {
         String msgAction = "methods?offset=0&count=0&locale=de";
         List<Method> methods = null;
 
-        doReturn(msgReturn).when(api).performHttpCall(
+        doReturn(response(msgReturn)).when(api).performHttpRequest(
             MollieClient.HTTP_GET, msgAction, null);
 
         try {
@@ -346,7 +563,7 @@ public class ApiTest {
         } catch (MollieException e) {
             throw e;
         } finally {
-            verify(api, times(1)).performHttpCall(MollieClient.HTTP_GET,
+            verify(api, times(1)).performHttpRequest(MollieClient.HTTP_GET,
                 msgAction, null);
         }
 
@@ -357,4 +574,1133 @@ public class ApiTest {
             assertThat(method, instanceOf(Method.class));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMethodsCacheServesRepeatedCalls() throws Exception
+    {
+        String msgReturn = "{\"totalCount\":1,\"offset\":0,\"count\":1,\"data\":[{\"id\":\"ideal\",\"description\":\"iDEAL\"}]}";
+        String msgAction = "methods?offset=0&count=0";
+        StubHttpTransport transport = new StubHttpTransport();
+
+        transport.respond(MollieClient.HTTP_GET, msgAction, msgReturn);
+        api.setTransport(transport);
+        api.methods().setCacheTtl(60000);
+
+        assertEquals("ideal", api.methods().all().get(0).id());
+        assertEquals("ideal", api.methods().all().get(0).id());
+        assertEquals("ideal", api.methods().allAsync().get().get(0).id());
+        assertEquals(1, transport.requestCount(MollieClient.HTTP_GET, msgAction));
+
+        api.methods().invalidateCache();
+
+        assertEquals("ideal", api.methods().all().get(0).id());
+        assertEquals(2, transport.requestCount(MollieClient.HTTP_GET, msgAction));
+    }
+
+    @Test
+    public void testIssuersCacheRefreshesStaleEntriesInBackground() throws Exception
+    {
+        String msgAction = "issuers?offset=0&count=0";
+        StubHttpTransport transport = new StubHttpTransport();
+
+        transport.respond(MollieClient.HTTP_GET, msgAction,
+            "{\"data\":[{\"id\":\"ideal_ABNANL2A\"}]}");
+        transport.respond(MollieClient.HTTP_GET, msgAction,
+            "{\"data\":[{\"id\":\"ideal_INGBNL2A\"}]}");
+        api.setTransport(transport);
+        api.issuers().setCacheTtl(1);
+
+        assertEquals("ideal_ABNANL2A", api.issuers().all().get(0).getId());
+
+        Thread.sleep(5);
+
+        // the stale listing is served while it is refreshed
+        assertEquals("ideal_ABNANL2A", api.issuers().all().get(0).getId());
+
+        for (int i = 0; i < 100 && api.issuers().all().get(0).getId().equals("ideal_ABNANL2A"); i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals("ideal_INGBNL2A", api.issuers().all().get(0).getId());
+    }
+
+    @Test
+    public void testMethodsCacheReturnsCopiesPerApiKey() throws Exception
+    {
+        String msgReturn = "{\"data\":[{\"id\":\"ideal\",\"description\":\"iDEAL\"}]}";
+        String msgAction = "methods?offset=0&count=0";
+        StubHttpTransport transport = new StubHttpTransport();
+
+        transport.respond(MollieClient.HTTP_GET, msgAction, msgReturn);
+        transport.respond(MollieClient.HTTP_GET, msgAction, msgReturn);
+        api.setTransport(transport);
+        api.methods().setCacheTtl(60000);
+
+        api.methods().all().get(0).setDescription("changed");
+        api.methods().allAsync().get().get(0).setDescription("changed");
+
+        assertEquals("iDEAL", api.methods().all().get(0).description());
+        assertEquals(1, transport.requestCount(MollieClient.HTTP_GET, msgAction));
+
+        api.setApiKey("test_otherkey");
+
+        assertEquals("iDEAL", api.methods().all().get(0).description());
+        assertEquals(2, transport.requestCount(MollieClient.HTTP_GET, msgAction));
+    }
+
+    @Test
+    public void testConcurrentCacheMissesShareOneCall() throws Exception
+    {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final StubHttpTransport stub = new StubHttpTransport();
+        final String msgAction = "methods?offset=0&count=0";
+
+        stub.respond(MollieClient.HTTP_GET, msgAction,
+            "{\"data\":[{\"id\":\"ideal\",\"description\":\"iDEAL\"}]}");
+
+        api.setTransport(new StubHttpTransport() {
+            @Override
+            public TransportResponse execute(TransportRequest request) throws IOException {
+                entered.countDown();
+
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+
+                return stub.execute(request);
+            }
+        });
+        api.methods().setCacheTtl(60000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<List<Method>> first = executor.submit(() -> api.methods().all());
+            entered.await();
+
+            Future<List<Method>> second = executor.submit(() -> api.methods().all());
+            CompletableFuture<List<Method>> third = api.methods().allAsync();
+
+            Thread.sleep(100);
+            release.countDown();
+
+            assertEquals("ideal", first.get().get(0).id());
+            assertEquals("ideal", second.get().get(0).id());
+            assertEquals("ideal", third.get().get(0).id());
+            assertEquals(1, stub.requests().size());
+            assertNotSame(first.get().get(0), second.get().get(0));
+            assertNotSame(first.get().get(0), third.get().get(0));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testPaymentCacheIsEvictedOnRefund() throws MollieException
+    {
+        String msgAction = "payments/tr_OCrlrHqKsr";
+        StubHttpTransport transport = new StubHttpTransport();
+
+        transport.respond(MollieClient.HTTP_GET, msgAction,
+            "{\"id\":\"tr_OCrlrHqKsr\",\"status\":\"paid\",\"amount\":\"100.00\"}");
+        transport.respond(MollieClient.HTTP_POST, msgAction + "/refunds",
+            "{\"id\":\"re_O3UbDhODzG\",\"payment\":{\"id\":\"tr_OCrlrHqKsr\",\"status\":\"refunded\"},\"amount\":\"100.00\"}");
+        api.setTransport(transport);
+        api.payments().setCache(new PaymentCache(10));
+
+        Payment payment = api.payments().get("tr_OCrlrHqKsr");
+        payment.description = "changed by the caller";
+
+        assertNull(api.payments().get("tr_OCrlrHqKsr").description);
+        assertEquals(1, transport.requestCount(MollieClient.HTTP_GET, msgAction));
+
+        api.payments().refund(payment);
+
+        assertEquals(Payment.STATUS_REFUNDED, payment.status);
+        assertEquals(0, api.payments().cache().size());
+
+        api.payments().get("tr_OCrlrHqKsr");
+        assertEquals(2, transport.requestCount(MollieClient.HTTP_GET, msgAction));
+    }
+
+    @Test
+    public void testPaymentCacheCopiesNestedFields() throws MollieException
+    {
+        String msgAction = "payments/tr_OCrlrHqKsr";
+        StubHttpTransport transport = new StubHttpTransport();
+
+        transport.respond(MollieClient.HTTP_GET, msgAction,
+            "{\"id\":\"tr_OCrlrHqKsr\",\"status\":\"open\",\"metadata\":{\"order\":{\"id\":\"12\"}}," +
+            "\"links\":{\"paymentUrl\":\"https://www.mollie.com/payscreen/pay/OCrlrHqKsr\"}}");
+        api.setTransport(transport);
+        api.payments().setCache(new PaymentCache(10));
+
+        Payment payment = api.payments().get("tr_OCrlrHqKsr");
+        payment.links.paymentUrl = "changed by the caller";
+        payment.metadata.put("order", "changed by the caller");
+
+        payment = api.payments().get("tr_OCrlrHqKsr");
+
+        assertEquals("https://www.mollie.com/payscreen/pay/OCrlrHqKsr", payment.links.paymentUrl);
+        assertEquals("12", ((Map<?, ?>)payment.metadata.get("order")).get("id"));
+        assertEquals(1, transport.requestCount(MollieClient.HTTP_GET, msgAction));
+    }
+
+    @Test
+    public void testConcurrentReadsShareOneCall() throws Exception
+    {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final StubHttpTransport stub = new StubHttpTransport();
+
+        stub.respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v",
+            "{\"id\":\"tr_d0b0E3EA3v\",\"status\":\"open\"}");
+
+        api.setTransport(new StubHttpTransport() {
+            @Override
+            public TransportResponse execute(TransportRequest request) throws IOException {
+                entered.countDown();
+
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+
+                return stub.execute(request);
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<Payment> first = executor.submit(() -> api.payments().get("tr_d0b0E3EA3v"));
+            entered.await();
+
+            Future<Payment> second = executor.submit(() -> api.payments().get("tr_d0b0E3EA3v"));
+            CompletableFuture<Payment> third = api.payments().getAsync("tr_d0b0E3EA3v");
+
+            Thread.sleep(100);
+            release.countDown();
+
+            assertEquals("tr_d0b0E3EA3v", first.get().id);
+            assertEquals("tr_d0b0E3EA3v", second.get().id);
+            assertEquals("tr_d0b0E3EA3v", third.get().id);
+            assertEquals("open", third.get().status);
+            assertEquals(1, stub.requests().size());
+            assertNotSame(first.get(), second.get());
+            assertNotSame(first.get(), third.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testTransientFailuresAreRetried() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+
+        transport.fail(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", new ConnectException("refused"))
+            .respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", 503, "")
+            .respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", "{\"id\":\"tr_d0b0E3EA3v\"}");
+
+        api.setTransport(transport);
+        api.setRetryPolicy(new RetryPolicy(3, 1, 10, 1000));
+
+        assertEquals("tr_d0b0E3EA3v", api.payments().get("tr_d0b0E3EA3v").id);
+        assertEquals(3, transport.requests().size());
+
+        transport.reset();
+        transport.fail(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", new ConnectException("refused"))
+            .respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", "{\"id\":\"tr_d0b0E3EA3v\"}");
+        api.payments().evict("tr_d0b0E3EA3v");
+
+        assertEquals("tr_d0b0E3EA3v", api.payments().getAsync("tr_d0b0E3EA3v").get().id);
+        assertEquals(2, transport.requests().size());
+    }
+
+    @Test
+    public void testCommunicationFailuresKeepTheirCause() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+        ConnectException refused = new ConnectException("refused");
+
+        transport.fail(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", refused);
+        api.setTransport(transport);
+        api.setRetryPolicy(RetryPolicy.NONE);
+
+        try {
+            api.payments().get("tr_d0b0E3EA3v");
+            fail();
+        } catch (MollieException e) {
+            assertEquals("Unable to communicate with Mollie", e.getMessage());
+            assertNull(e.type);
+            assertEquals(refused, e.getCause());
+        }
+    }
+
+    @Test
+    public void testRetriedWritesKeepIdempotencyKey() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+        LinkedHashMap<String, String> headers = new LinkedHashMap<String, String>();
+
+        headers.put("Retry-After", "0");
+        transport.respond(MollieClient.HTTP_POST, "payments", 429, headers, new byte[0])
+            .respond(MollieClient.HTTP_POST, "payments", 502, "")
+            .respond(MollieClient.HTTP_POST, "payments", "{\"id\":\"tr_d0b0E3EA3v\"}");
+
+        api.setTransport(transport);
+        api.setRetryPolicy(new RetryPolicy(3, 1, 10, 1000));
+
+        Payment payment = api.payments().create(new BigDecimal(20),
+            "My first API payment", "https://webshop.example.org/order/12345/", null);
+
+        List<TransportRequest> requests = transport.requests();
+        String key = requests.get(0).header(MollieClient.IDEMPOTENCY_KEY_HEADER);
+
+        assertEquals("tr_d0b0E3EA3v", payment.id);
+        assertEquals(3, requests.size());
+        assertNotNull(key);
+        assertEquals(key, requests.get(1).header(MollieClient.IDEMPOTENCY_KEY_HEADER));
+        assertEquals(key, requests.get(2).header(MollieClient.IDEMPOTENCY_KEY_HEADER));
+    }
+
+    @Test
+    public void testRetriesStopWhenExhausted() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+
+        transport.respond(MollieClient.HTTP_GET, "issuers/ideal_INGBNL2A", 503,
+            "{\"error\":{\"type\":\"request\",\"message\":\"Unavailable\"}}");
+        api.setTransport(transport);
+        api.setRetryPolicy(new RetryPolicy(2, 1, 10, 1000));
+
+        thrown.expect(MollieException.class);
+        thrown.expectMessage("Unavailable");
+
+        try {
+            api.issuers().get("ideal_INGBNL2A");
+        } finally {
+            assertEquals(3, transport.requests().size());
+        }
+    }
+
+    @Test
+    public void testRateLimiterRejectsCallsOverBudget() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+
+        transport.respond(MollieClient.HTTP_GET, "issuers/ideal_INGBNL2A", "{\"id\":\"ideal_INGBNL2A\"}");
+        api.setTransport(transport);
+        api.setRateLimiter(new RateLimiter(0.1, 2, 0));
+
+        api.issuers().get("ideal_INGBNL2A");
+        api.issuers().get("ideal_INGBNL2A");
+
+        try {
+            api.issuers().getAsync("ideal_INGBNL2A").get();
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(RateLimitExceededException.class));
+        }
+
+        thrown.expect(RateLimitExceededException.class);
+
+        try {
+            api.issuers().get("ideal_INGBNL2A");
+        } finally {
+            assertEquals(2, transport.requests().size());
+        }
+    }
+
+    @Test
+    public void testRateLimiterQueuesCallsWithinMaxWait() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+        RateLimiter limiter = new RateLimiter(20, 1, 1000);
+
+        transport.respond(MollieClient.HTTP_GET, "issuers/ideal_INGBNL2A", "{\"id\":\"ideal_INGBNL2A\"}");
+        api.setTransport(transport);
+        api.setRateLimiter(limiter);
+
+        long started = System.nanoTime();
+
+        api.issuers().get("ideal_INGBNL2A");
+        api.issuers().get("ideal_INGBNL2A");
+        api.issuers().getAsync("ideal_INGBNL2A").get();
+
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(90));
+        assertEquals(3, transport.requests().size());
+        assertEquals(0, limiter.acquire("another_key"));
+    }
+
+    @Test
+    public void testCircuitBreakerFailsFastPerEndpointGroup() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+        CircuitBreaker breaker = new CircuitBreaker(4, 2, 0.5, 10000, 1.0, 50, 1);
+        String error = "{\"error\":{\"type\":\"request\",\"message\":\"Unavailable\"}}";
+
+        transport.respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", 500, error)
+            .respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v/refunds?offset=0&count=0",
+                "{\"data\":[]}");
+        api.setTransport(transport);
+        api.setCircuitBreaker(breaker);
+
+        for (int i = 0; i < 2; i++)
+        {
+            try {
+                api.payments().get("tr_d0b0E3EA3v");
+                fail();
+            } catch (MollieException e) {
+                assertEquals("Error executing API call (request): Unavailable.", e.getMessage());
+            }
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state("payments"));
+
+        try {
+            api.payments().getAsync("tr_d0b0E3EA3v").get();
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(CircuitOpenException.class));
+        }
+
+        Payment payment = new Payment();
+        payment.id = "tr_d0b0E3EA3v";
+
+        assertEquals(0, api.refundsWithPayment(payment).all().size());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state("refunds"));
+        assertEquals(2, transport.requestCount(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v"));
+
+        Thread.sleep(60);
+        transport.reset();
+        transport.respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", "{\"id\":\"tr_d0b0E3EA3v\"}");
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state("payments"));
+        assertEquals("tr_d0b0E3EA3v", api.payments().get("tr_d0b0E3EA3v").id);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state("payments"));
+    }
+
+    @Test
+    public void testCallMetricsRecordedPerResourceAndMethod() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+        CallMetrics metrics = new CallMetrics();
+        String payment = "{\"id\":\"tr_d0b0E3EA3v\"}";
+
+        transport.respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", payment)
+            .respond(MollieClient.HTTP_POST, "payments", 422,
+                "{\"error\":{\"type\":\"request\",\"message\":\"The amount is lower than minimum\"}}")
+            .respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v/refunds/re_4qqhO89gsT",
+                "{\"id\":\"re_4qqhO89gsT\"}");
+        api.setTransport(transport);
+        api.setMetricsListener(metrics);
+        api.payments().setCache(null);
+
+        api.payments().get("tr_d0b0E3EA3v");
+        api.payments().getAsync("tr_d0b0E3EA3v").get();
+
+        try {
+            api.payments().create(new BigDecimal("0.01"), "Too little", "https://webshop.example.org/", null);
+            fail();
+        } catch (MollieException e) {
+        }
+
+        Payment refunded = new Payment();
+        refunded.id = "tr_d0b0E3EA3v";
+        api.refundsWithPayment(refunded).get("re_4qqhO89gsT");
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        MetricsSnapshot.Endpoint reads = snapshot.endpoint("payments", MollieClient.HTTP_GET);
+        MetricsSnapshot.Endpoint creates = snapshot.endpoint("payments", MollieClient.HTTP_POST);
+
+        assertEquals(3, snapshot.endpoints().size());
+        assertEquals(2, reads.calls());
+        assertEquals(0, reads.errors());
+        assertEquals(0, reads.bytesOut());
+        assertEquals(2 * payment.length(), reads.bytesIn());
+        assertEquals(2, reads.latency().count());
+        assertTrue(reads.latency().p50() > 0);
+        assertTrue(reads.latency().p999() >= reads.latency().p50());
+        assertEquals(1, creates.errors());
+        assertEquals(Long.valueOf(1), creates.errorTypes().get("request"));
+        assertTrue(creates.bytesOut() > 0);
+        assertEquals(1, snapshot.endpoint("refunds", MollieClient.HTTP_GET).calls());
+    }
+
+    @Test
+    public void testLatencyHistogramPercentiles()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (long i = 1; i <= 100000; i++)
+            histogram.record(i * 1000);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(100000, snapshot.count());
+        assertEquals(100000000, snapshot.max());
+        assertTrue(Math.abs(snapshot.p50() - 50000000) <= 50000000 * 0.032);
+        assertTrue(Math.abs(snapshot.p99() - 99000000) <= 99000000 * 0.032);
+        assertTrue(Math.abs(snapshot.p999() - 99900000) <= 99900000 * 0.032);
+        assertEquals(0, new LatencyHistogram().snapshot().p99());
+    }
+
+    @Test
+    public void testListOptionsArePercentEncoded() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+        LinkedHashMap<String, String> options = new LinkedHashMap<String, String>();
+
+        options.put("description", "Order #1 & co");
+        options.put("locale", "fr_BE");
+        options.put("city", "Li\u00e8ge");
+
+        api.setTransport(transport);
+        transport.respond(MollieClient.HTTP_GET,
+            "payments?description=Order%20%231%20%26%20co&locale=fr_BE&city=Li%C3%A8ge&offset=0&count=50",
+            "{\"data\":[{\"id\":\"tr_d0b0E3EA3v\"}]}");
+        transport.respond(MollieClient.HTTP_GET, "payments?offset=10&count=5", "{\"data\":[]}");
+
+        assertEquals(1, api.payments().all(0, 50, options).size());
+
+        api.payments().all(10, 5);
+
+        assertEquals(2, transport.requests().size());
+        assertEquals(MollieClient.API_ENDPOINT + "/v1/payments?offset=10&count=5",
+            transport.requests().get(1).uri().toString());
+    }
+
+    @Test
+    public void testGzipResponsesAreDecompressed() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+        LinkedHashMap<String, String> headers = new LinkedHashMap<String, String>();
+        byte[] body = gzip("{\"id\":\"tr_d0b0E3EA3v\",\"description\":\"Order #1225\"}");
+
+        headers.put("Content-Encoding", "gzip");
+        transport.respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", 200, headers, body);
+        api.setTransport(transport);
+        api.setResponseCompression(true);
+
+        assertEquals("Order #1225", api.payments().get("tr_d0b0E3EA3v").description);
+        assertEquals("gzip", transport.requests().get(0).header("Accept-Encoding"));
+
+        api.setResponseCompression(false);
+        api.payments().evict("tr_d0b0E3EA3v");
+
+        assertEquals("Order #1225", api.payments().getAsync("tr_d0b0E3EA3v").get().description);
+        assertNull(transport.requests().get(1).header("Accept-Encoding"));
+    }
+
+    @Test
+    public void testLargeRequestBodiesAreCompressed() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+        String msgBody = "{\"amount\":100,\"description\":\"Order #1337 24 Roundhousekicks\",\"redirectUrl\":\"http://www.chucknorris.rhk/return.php\"}";
+
+        transport.respond(MollieClient.HTTP_POST, "payments", "{\"id\":\"tr_d0b0E3EA3v\"}");
+        api.setTransport(transport);
+        api.setRequestCompressionThreshold(100);
+
+        api.payments().create(new BigDecimal(100), "Order #1337 24 Roundhousekicks",
+            "http://www.chucknorris.rhk/return.php", null);
+        api.payments().create(new BigDecimal(100), "Order", null, null);
+
+        TransportRequest compressed = transport.requests().get(0);
+        TransportRequest plain = transport.requests().get(1);
+        GZIPInputStream in = new GZIPInputStream(
+            new ByteArrayInputStream(compressed.body()));
+
+        assertEquals("gzip", compressed.header("Content-Encoding"));
+        assertEquals(msgBody, IOUtils.toString(in, StandardCharsets.UTF_8));
+        assertNull(plain.header("Content-Encoding"));
+        assertEquals("{\"amount\":100,\"description\":\"Order\"}", new String(plain.body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testJdkTransportCompletesFutureOnRuntimeException() throws Exception
+    {
+        try (JdkHttpTransport transport = new JdkHttpTransport()) {
+            TransportRequest request = new TransportRequest(MollieClient.HTTP_GET,
+                URI.create("payments"), Collections.<String, String>emptyMap(), null);
+
+            transport.executeAsync(request).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+        }
+    }
+
+    @Test
+    public void testVirtualThreadsFallBackOnOlderRuntimes() throws Exception
+    {
+        try (JdkHttpTransport transport = new JdkHttpTransport()) {
+            assertNotNull(transport);
+        }
+
+        if (VirtualThreads.isSupported()) {
+            ExecutorService executor = VirtualThreads.newExecutor("mollie-");
+
+            try {
+                assertTrue(executor.submit(() -> Thread.currentThread().getName()).get().startsWith("mollie-"));
+            } finally {
+                executor.shutdown();
+            }
+        } else {
+            thrown.expect(UnsupportedOperationException.class);
+            VirtualThreads.newExecutor("mollie-");
+        }
+    }
+
+    @Test
+    public void testHttpClientTransportSendsRequests() throws Exception
+    {
+        if (!HttpClientTransport.isSupported()) {
+            thrown.expect(UnsupportedOperationException.class);
+            new HttpClientTransport();
+        }
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+
+        server.createContext("/v1/payments", exchange -> {
+            byte[] body = IOUtils.toByteArray(exchange.getRequestBody());
+
+            if (body.length == 0)
+                body = "{\"id\":\"tr_d0b0E3EA3v\"}".getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().set("Content-Type", exchange.getRequestHeaders().getFirst("Accept"));
+            exchange.sendResponseHeaders(201, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+
+        try (HttpClientTransport transport = new HttpClientTransport()) {
+            URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/v1/payments");
+            LinkedHashMap<String, String> headers = new LinkedHashMap<String, String>();
+
+            headers.put("Accept", "application/json");
+            headers.put("Content-Length", "1");
+
+            try (TransportResponse response = transport.execute(
+                    new TransportRequest(MollieClient.HTTP_GET, uri, headers, null))) {
+                assertEquals(201, response.status());
+                assertEquals("application/json", response.header("content-type"));
+                assertEquals("{\"id\":\"tr_d0b0E3EA3v\"}", IOUtils.toString(response.body(), StandardCharsets.UTF_8));
+            }
+
+            headers.put("Content-Length", "2");
+
+            try (TransportResponse response = transport.executeAsync(new TransportRequest(MollieClient.HTTP_POST,
+                    uri, headers, "{}".getBytes(StandardCharsets.UTF_8))).get(5, TimeUnit.SECONDS)) {
+                assertEquals(201, response.status());
+                assertEquals(2, response.contentLength());
+                assertEquals("{}", IOUtils.toString(response.body(), StandardCharsets.UTF_8));
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testCreateAllReturnsResultsInInputOrder() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+
+        transport.respond(MollieClient.HTTP_POST, "payments", "{\"id\":\"tr_1\"}")
+            .respond(MollieClient.HTTP_POST, "payments", 422,
+                "{\"error\":{\"type\":\"request\",\"message\":\"The amount is lower than minimum\"}}")
+            .respond(MollieClient.HTTP_POST, "payments", "{\"id\":\"tr_3\"}");
+        api.setTransport(transport);
+
+        List<BatchResult<Payment>> results = api.payments().createAll(Arrays.asList(
+            new PaymentRequest(new BigDecimal(10), "Invoice 1", "https://webshop.example.org/"),
+            new PaymentRequest(new BigDecimal("0.01"), "Invoice 2", "https://webshop.example.org/"),
+            new PaymentRequest(new BigDecimal(30), "Invoice 3", "https://webshop.example.org/")));
+
+        assertEquals(3, results.size());
+        assertEquals("tr_1", results.get(0).get().id);
+        assertFalse(results.get(1).isSuccess());
+        assertEquals(1, results.get(1).index());
+        assertEquals("request", results.get(1).error().type);
+        assertEquals("tr_3", results.get(2).value().id);
+        assertTrue(api.payments().createAll(new ArrayList<PaymentRequest>()).isEmpty());
+    }
+
+    @Test
+    public void testCreateAllBoundsCreationsInFlight() throws Exception
+    {
+        final List<CompletableFuture<TransportResponse>> pending =
+            new ArrayList<CompletableFuture<TransportResponse>>();
+        List<PaymentRequest> requests = new ArrayList<PaymentRequest>();
+
+        doAnswer(invocation -> {
+            CompletableFuture<TransportResponse> future = new CompletableFuture<TransportResponse>();
+            pending.add(future);
+            return future;
+        }).when(api).performHttpRequestAsync(eq(MollieClient.HTTP_POST), eq("payments"), anyString());
+
+        for (int i = 0; i < 5; i++)
+            requests.add(new PaymentRequest(new BigDecimal(10), "Invoice " + i, null));
+
+        CompletableFuture<List<BatchResult<Payment>>> results = api.payments().createAllAsync(requests, 2);
+
+        assertEquals(2, pending.size());
+
+        pending.get(1).complete(response("{\"id\":\"tr_2\"}"));
+        assertEquals(3, pending.size());
+
+        pending.get(0).completeExceptionally(new MollieException("Unable to connect"));
+        pending.get(2).complete(response("{\"id\":\"tr_3\"}"));
+        pending.get(3).complete(response("{\"id\":\"tr_4\"}"));
+        assertFalse(results.isDone());
+        assertEquals(5, pending.size());
+
+        pending.get(4).complete(response("{\"id\":\"tr_5\"}"));
+
+        assertEquals("Unable to connect", results.get().get(0).error().message);
+        assertEquals(Arrays.asList(null, "tr_2", "tr_3", "tr_4", "tr_5"), results.get().stream()
+            .map(result -> (result.isSuccess() ? result.value().id : null)).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testWebhookProcessorReportsStatusChanges() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+        final LinkedBlockingQueue<String> changes = new LinkedBlockingQueue<String>();
+        WebhookProcessor processor = new WebhookProcessor(api, 1, 10, 0, 100);
+
+        transport.respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", "{\"id\":\"tr_d0b0E3EA3v\",\"status\":\"open\"}")
+            .respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", "{\"id\":\"tr_d0b0E3EA3v\",\"status\":\"paid\"}")
+            .respond(MollieClient.HTTP_GET, "payments/tr_unknown", 404,
+                "{\"error\":{\"type\":\"request\",\"message\":\"The payment id is invalid\"}}");
+        api.setTransport(transport);
+
+        processor.addListener(new PaymentStatusListener() {
+            public void statusChanged(Payment payment, String previousStatus) {
+                changes.add(payment.id + " " + previousStatus + " " + payment.status);
+            }
+
+            public void fetchFailed(String paymentId, MollieException error) {
+                changes.add(paymentId + " " + error.type);
+            }
+        });
+
+        assertEquals(WebhookProcessor.Acceptance.QUEUED, processor.accept("tr_d0b0E3EA3v"));
+        assertEquals("tr_d0b0E3EA3v null open", changes.poll(5, TimeUnit.SECONDS));
+
+        // queued again, or fetched once more if the first fetch has not quite finished
+        assertFalse(processor.accept("tr_d0b0E3EA3v") == WebhookProcessor.Acceptance.REJECTED);
+        assertEquals("tr_d0b0E3EA3v open paid", changes.poll(5, TimeUnit.SECONDS));
+
+        assertEquals(WebhookProcessor.Acceptance.QUEUED, processor.accept("tr_unknown"));
+        processor.close();
+
+        assertEquals("tr_unknown request", changes.poll());
+        assertTrue(changes.isEmpty());
+        assertEquals(WebhookProcessor.Acceptance.REJECTED, processor.accept("tr_d0b0E3EA3v"));
+    }
+
+    @Test
+    public void testWebhookProcessorCollapsesBurstsAndBoundsQueue() throws Exception
+    {
+        final CountDownLatch fetching = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        WebhookProcessor processor = new WebhookProcessor(api, 1, 1, 60000, 100);
+
+        doAnswer(invocation -> {
+            fetching.countDown();
+            release.await();
+
+            String paymentId = ((String)invocation.getArguments()[1]).substring("payments/".length());
+            return response("{\"id\":\"" + paymentId + "\",\"status\":\"open\"}");
+        }).when(api).performHttpRequest(eq(MollieClient.HTTP_GET), startsWith("payments/"), isNull(String.class));
+
+        assertEquals(WebhookProcessor.Acceptance.QUEUED, processor.accept("tr_1"));
+        assertTrue(fetching.await(5, TimeUnit.SECONDS));
+
+        assertEquals(WebhookProcessor.Acceptance.DUPLICATE, processor.accept("tr_1"));
+        assertEquals(WebhookProcessor.Acceptance.QUEUED, processor.accept("tr_2"));
+        assertEquals(WebhookProcessor.Acceptance.DUPLICATE, processor.accept("tr_2"));
+        assertEquals(WebhookProcessor.Acceptance.REJECTED, processor.accept("tr_3"));
+
+        release.countDown();
+        processor.close();
+
+        verify(api, times(2)).performHttpRequest(MollieClient.HTTP_GET, "payments/tr_1", null);
+        verify(api, times(1)).performHttpRequest(MollieClient.HTTP_GET, "payments/tr_2", null);
+        verify(api, never()).performHttpRequest(MollieClient.HTTP_GET, "payments/tr_3", null);
+    }
+
+    @Test
+    public void testWebhookProcessorNeverFetchesAPaymentTwiceAtOnce() throws Exception
+    {
+        final CountDownLatch fetching = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        WebhookProcessor processor = new WebhookProcessor(api, 2, 10, 0, 100);
+
+        doAnswer(invocation -> {
+            fetching.countDown();
+            release.await();
+            return response("{\"id\":\"tr_1\",\"status\":\"open\"}");
+        }).when(api).performHttpRequest(MollieClient.HTTP_GET, "payments/tr_1", null);
+
+        assertEquals(WebhookProcessor.Acceptance.QUEUED, processor.accept("tr_1"));
+        assertTrue(fetching.await(5, TimeUnit.SECONDS));
+
+        // the dedup window has passed, but the payment is still being fetched
+        assertEquals(WebhookProcessor.Acceptance.DUPLICATE, processor.accept("tr_1"));
+        assertEquals(WebhookProcessor.Acceptance.DUPLICATE, processor.accept("tr_1"));
+
+        release.countDown();
+        processor.close();
+
+        verify(api, times(2)).performHttpRequest(MollieClient.HTTP_GET, "payments/tr_1", null);
+    }
+
+    @Test
+    public void testPaymentWatcherPollsUntilFinalStatus() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+        final List<String> changes = new ArrayList<String>();
+        final CountDownLatch paid = new CountDownLatch(1);
+        PaymentWatcher watcher = new PaymentWatcher(api, 2, 10, 10, 5);
+
+        transport.respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", "{\"id\":\"tr_d0b0E3EA3v\",\"status\":\"open\"}")
+            .respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", "{\"id\":\"tr_d0b0E3EA3v\",\"status\":\"pending\"}")
+            .respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", "{\"id\":\"tr_d0b0E3EA3v\",\"status\":\"paid\"}");
+        api.setTransport(transport);
+
+        watcher.addListener((payment, previousStatus) -> {
+            changes.add(previousStatus + " " + payment.status);
+
+            if (Payment.STATUS_PAID.equals(payment.status))
+                paid.countDown();
+        });
+
+        Payment open = new Payment();
+        open.id = "tr_d0b0E3EA3v";
+        open.createdDatetime = Instant.now().toString();
+        open.expiryPeriod = "PT15M";
+
+        assertTrue(watcher.watch(open));
+        assertFalse(watcher.watch("tr_d0b0E3EA3v"));
+        assertTrue(paid.await(5, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList("open pending", "pending paid"), changes);
+        assertFalse(watcher.isWatching("tr_d0b0E3EA3v"));
+
+        Thread.sleep(50);
+        watcher.close();
+
+        assertEquals(3, transport.requestCount(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v"));
+    }
+
+    @Test
+    public void testPaymentWatcherBoundsConcurrentPolls() throws Exception
+    {
+        final List<CompletableFuture<TransportResponse>> polls =
+            Collections.synchronizedList(new ArrayList<CompletableFuture<TransportResponse>>());
+        PaymentWatcher watcher = new PaymentWatcher(api, 2, 5, 5, 1);
+
+        doAnswer(invocation -> {
+            CompletableFuture<TransportResponse> poll = new CompletableFuture<TransportResponse>();
+            polls.add(poll);
+            return poll;
+        }).when(api).performHttpRequestAsync(eq(MollieClient.HTTP_GET), startsWith("payments/"), isNull(String.class));
+
+        for (int i = 0; i < 5; i++)
+            watcher.watch("tr_" + i);
+
+        while (polls.size() < 2)
+            Thread.sleep(1);
+
+        Thread.sleep(50);
+        assertEquals(2, polls.size());
+
+        for (int done = 0; done < 5; done++)
+        {
+            while (polls.size() <= done)
+                Thread.sleep(1);
+
+            polls.get(done).complete(response("{\"status\":\"paid\"}"));
+        }
+
+        while (watcher.watching() > 0)
+            Thread.sleep(1);
+
+        watcher.close();
+        assertEquals(5, polls.size());
+    }
+
+    @Test
+    public void testJournalRecordsSnapshotsAcrossRestarts() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+        Path directory = folder.newFolder("journal").toPath();
+        PaymentJournal journal = new PaymentJournal(directory, 1024);
+
+        transport.respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", "{\"id\":\"tr_d0b0E3EA3v\",\"status\":\"open\"}")
+            .respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", "{\"id\":\"tr_d0b0E3EA3v\",\"status\":\"open\"}")
+            .respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", "{\"id\":\"tr_d0b0E3EA3v\",\"status\":\"paid\"}")
+            .respond(MollieClient.HTTP_POST, "payments/tr_d0b0E3EA3v/refunds",
+                "{\"id\":\"re_4qqhO89gsT\",\"amount\":\"5.00\",\"payment\":{\"id\":\"tr_d0b0E3EA3v\",\"status\":\"refunded\"}}");
+        api.setTransport(transport);
+        api.setJournal(journal);
+
+        for (int i = 0; i < 3; i++)
+            api.payments().get("tr_d0b0E3EA3v");
+
+        api.payments().refund(api.payments().get("tr_d0b0E3EA3v"), new BigDecimal("5.00"));
+        journal.close();
+
+        // open, paid, refunded and the refund; the repeated open snapshot is not appended
+        journal = new PaymentJournal(directory, 1024);
+        assertEquals(4, journal.records());
+        assertEquals(2, journal.size());
+        assertEquals(Payment.STATUS_REFUNDED, journal.payment("tr_d0b0E3EA3v").status);
+        assertEquals(new BigDecimal("5.00"), journal.refund("re_4qqhO89gsT").amount);
+
+        journal.compact();
+        journal.append(journal.payment("tr_d0b0E3EA3v"));
+        journal.close();
+
+        journal = new PaymentJournal(directory, 1024);
+        assertEquals(2, journal.records());
+        assertEquals(Arrays.asList("tr_d0b0E3EA3v"), new ArrayList<String>(journal.paymentIds()));
+        assertEquals(Payment.STATUS_REFUNDED, journal.payments().get(0).status);
+        assertEquals(new BigDecimal("5.00"), journal.refund("re_4qqhO89gsT").amount);
+        journal.close();
+    }
+
+    @Test
+    public void testJournalCountsFailedAppends() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+        PaymentJournal journal = new PaymentJournal(folder.newFolder("journal").toPath());
+
+        transport.respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", "{\"id\":\"tr_d0b0E3EA3v\",\"status\":\"open\"}")
+            .respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", "{\"id\":\"tr_d0b0E3EA3v\",\"status\":\"paid\"}");
+        api.setTransport(transport);
+        api.setJournal(journal);
+
+        api.payments().get("tr_d0b0E3EA3v");
+        assertEquals(0, journal.failures());
+        assertNull(journal.lastFailure());
+
+        journal.close();
+
+        // the call succeeds, the journal records that it could not append
+        assertEquals(Payment.STATUS_PAID, api.payments().get("tr_d0b0E3EA3v").status);
+        assertEquals(1, journal.failures());
+        assertEquals("The journal is closed", journal.lastFailure().getMessage());
+    }
+
+    @Test
+    public void testJournalIgnoresTornRecords() throws Exception
+    {
+        Path directory = folder.newFolder("journal").toPath();
+        PaymentJournal journal = new PaymentJournal(directory);
+        Payment payment = new Payment();
+
+        payment.id = "tr_d0b0E3EA3v";
+        journal.append(payment);
+        payment.status = Payment.STATUS_PAID;
+        journal.append(payment);
+        journal.close();
+
+        Path segment = directory.resolve(String.format("%016d.journal", 1));
+        byte[] contents = Files.readAllBytes(segment);
+        String text = new String(contents, StandardCharsets.ISO_8859_1);
+
+        contents[text.lastIndexOf("paid")] = 'P';
+        Files.write(segment, contents);
+
+        journal = new PaymentJournal(directory);
+        assertEquals(1, journal.records());
+        assertEquals(Payment.STATUS_OPEN, journal.payment("tr_d0b0E3EA3v").status);
+
+        journal.append(payment);
+        journal.close();
+
+        journal = new PaymentJournal(directory);
+        assertEquals(Payment.STATUS_PAID, journal.payment("tr_d0b0E3EA3v").status);
+        journal.close();
+    }
+
+    @Test
+    public void testReadResponseGrowsBufferAsBytesArrive() throws Exception
+    {
+        StringBuilder large = new StringBuilder();
+
+        for (int i = 0; i < 3000; i++)
+            large.append("K\u00fcppers ");
+
+        byte[] body = large.toString().getBytes(StandardCharsets.UTF_8);
+        StubHttpTransport transport = new StubHttpTransport();
+
+        transport.respond(MollieClient.HTTP_GET, "methods", 200,
+                Collections.singletonMap("Content-Length", Integer.toString(body.length)), body)
+            .respond(MollieClient.HTTP_GET, "issuers", 200,
+                Collections.singletonMap("Content-Length", Integer.toString(Integer.MAX_VALUE - 16)),
+                "{}".getBytes(StandardCharsets.UTF_8));
+        api.setTransport(transport);
+
+        assertEquals(large.toString(), api.performHttpCall(MollieClient.HTTP_GET, "methods"));
+        // a Content-Length larger than the body does not allocate it up front
+        assertEquals("{}", api.performHttpCall(MollieClient.HTTP_GET, "issuers"));
+    }
+
+    @Test
+    public void testSyncSinceReturnsOnlyNewAndChangedPayments() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+        String page = "payments?offset=0&count=" + Payments.DEFAULT_PAGE_SIZE;
+
+        transport.respond(MollieClient.HTTP_GET, page, "{\"data\":["
+                + syncPayment("tr_3", "open", 3) + "," + syncPayment("tr_2", "paid", 2) + ","
+                + syncPayment("tr_1", "expired", 1) + "]}")
+            .respond(MollieClient.HTTP_GET, page, "{\"data\":["
+                + syncPayment("tr_4", "pending", 4) + "," + syncPayment("tr_3", "paid", 3) + ","
+                + syncPayment("tr_2", "paid", 2) + "," + syncPayment("tr_1", "expired", 1) + "]}")
+            .respond(MollieClient.HTTP_GET, page, "{\"data\":["
+                + syncPayment("tr_5", "open", 5) + "," + syncPayment("tr_3", "paid", 3) + "]}")
+            .respond(MollieClient.HTTP_GET, "payments/tr_4", syncPayment("tr_4", "paid", 4));
+        api.setTransport(transport);
+
+        PaymentSync first = api.payments().syncSince(null);
+        assertEquals(Arrays.asList("tr_3", "tr_2", "tr_1"), ids(first.changes()));
+        assertEquals(Collections.singletonMap("tr_3", "open"), first.cursor().unsettled());
+
+        PaymentSync second = api.payments().syncSince(SyncCursor.parse(first.cursor().toString()));
+        assertEquals(Arrays.asList("tr_4", "tr_3"), ids(second.changes()));
+        assertEquals(Collections.singletonMap("tr_4", "pending"), second.cursor().unsettled());
+
+        // tr_4 is not reached by the listing, so it is fetched by itself
+        PaymentSync third = api.payments().syncSince(second.cursor());
+        assertEquals(Arrays.asList("tr_5", "tr_4"), ids(third.changes()));
+        assertEquals(Collections.singletonMap("tr_5", "open"), third.cursor().unsettled());
+        assertEquals(third.cursor(), SyncCursor.parse(third.cursor().toString()));
+        assertEquals(3, transport.requestCount(MollieClient.HTTP_GET, page));
+    }
+
+    @Test
+    public void testSyncSinceReportsPaymentsThatCannotBeFetched() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+        String page = "payments?offset=0&count=" + Payments.DEFAULT_PAGE_SIZE;
+
+        transport.respond(MollieClient.HTTP_GET, page, "{\"data\":["
+                + syncPayment("tr_2", "open", 2) + "," + syncPayment("tr_1", "open", 1) + ","
+                + syncPayment("tr_0", "paid", 0) + "]}")
+            .respond(MollieClient.HTTP_GET, page, "{\"data\":[{\"id\":\"tr_x\",\"status\":\"paid\"},"
+                + syncPayment("tr_0", "paid", 0) + "]}")
+            .respond(MollieClient.HTTP_GET, "payments/tr_2", 404,
+                "{\"error\":{\"type\":\"request\",\"message\":\"The payment id is invalid\"}}")
+            .fail(MollieClient.HTTP_GET, "payments/tr_1", new ConnectException("refused"));
+        api.setTransport(transport);
+        api.setRetryPolicy(RetryPolicy.NONE);
+
+        PaymentSync first = api.payments().syncSince(null);
+        assertEquals(Arrays.asList("tr_2", "tr_1", "tr_0"), ids(first.changes()));
+
+        // a payment without a creation time does not stop the listing
+        PaymentSync second = api.payments().syncSince(first.cursor());
+        assertEquals(Arrays.asList("tr_x"), ids(second.changes()));
+        assertEquals("request", second.failures().get("tr_2").type);
+        assertThat(second.failures().get("tr_1").getCause(), instanceOf(ConnectException.class));
+        assertEquals(Collections.singletonMap("tr_1", "open"), second.cursor().unsettled());
+    }
+
+    @Test
+    public void testSyncSinceKeepsPaymentsAfterTemporaryErrors() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+        String page = "payments?offset=0&count=" + Payments.DEFAULT_PAGE_SIZE;
+
+        transport.respond(MollieClient.HTTP_GET, page, "{\"data\":["
+                + syncPayment("tr_2", "open", 2) + "," + syncPayment("tr_1", "open", 1) + "]}")
+            .respond(MollieClient.HTTP_GET, page, "{\"data\":[" + syncPayment("tr_1", "open", 1) + "]}")
+            .respond(MollieClient.HTTP_GET, "payments/tr_2", 503,
+                "{\"error\":{\"type\":\"api_error\",\"message\":\"Service unavailable\"}}")
+            .respond(MollieClient.HTTP_GET, "payments/tr_2", 410,
+                "{\"error\":{\"type\":\"request\",\"message\":\"The payment is gone\"}}");
+        api.setTransport(transport);
+        api.setRetryPolicy(RetryPolicy.NONE);
+
+        PaymentSync first = api.payments().syncSince(null);
+        PaymentSync second = api.payments().syncSince(first.cursor());
+
+        assertEquals(503, second.failures().get("tr_2").getStatus());
+        assertEquals("api_error", second.failures().get("tr_2").type);
+        assertEquals(first.cursor().unsettled(), second.cursor().unsettled());
+
+        PaymentSync third = api.payments().syncSince(second.cursor());
+
+        assertEquals(410, third.failures().get("tr_2").getStatus());
+        assertEquals(Collections.singletonMap("tr_1", "open"), third.cursor().unsettled());
+    }
+
+    @Test
+    public void testResponsesAreDecodedAcrossBufferBoundaries() throws Exception
+    {
+        StubHttpTransport transport = new StubHttpTransport();
+        StringBuilder description = new StringBuilder();
+
+        for (int i = 0; i < 3000; i++)
+            description.append(i % 2 == 0 ? "K\u00fcppers " : "\ud83d\ude00\u20ac");
+
+        byte[] body = ("{\"id\":\"tr_d0b0E3EA3v\",\"description\":\"" + description + "\"}")
+            .getBytes(StandardCharsets.UTF_8);
+        byte[] malformed = "{\"id\":\"tr_WDqYK6vllg\",\"description\":\"a?b\"}".getBytes(StandardCharsets.UTF_8);
+
+        malformed[malformed.length - 4] = (byte)0xc3;
+
+        transport.respond(MollieClient.HTTP_GET, "payments/tr_d0b0E3EA3v", 200,
+                Collections.singletonMap("Content-Length", Integer.toString(body.length)), body)
+            .respond(MollieClient.HTTP_GET, "payments/tr_WDqYK6vllg", 200,
+                Collections.singletonMap("Content-Length", Integer.toString(malformed.length)), malformed);
+        api.setTransport(transport);
+
+        assertEquals(description.toString(), api.payments().get("tr_d0b0E3EA3v").description);
+        assertEquals("a\ufffdb", api.payments().get("tr_WDqYK6vllg").description);
+    }
+
+    private static String page(int offset, int count)
+    {
+        StringBuilder page = new StringBuilder("{\"data\":[");
+
+        for (int i = offset; i < offset + count; i++)
+            page.append(i > offset ? "," : "").append("{\"id\":\"tr_").append(i).append("\"}");
+
+        return page.append("]}").toString();
+    }
+
+    private static String syncPayment(String id, String status, int minute)
+    {
+        return "{\"id\":\"" + id + "\",\"status\":\"" + status
+            + "\",\"createdDatetime\":\"2017-03-01T12:0" + minute + ":00.0Z\"}";
+    }
+
+    private static List<String> ids(List<Payment> payments)
+    {
+        return payments.stream().map(payment -> payment.id).collect(Collectors.toList());
+    }
+
+    private static byte[] gzip(String body) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return out.toByteArray();
+    }
+}